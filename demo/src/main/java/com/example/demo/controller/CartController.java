@@ -4,6 +4,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -13,6 +14,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.demo.domain.Cart;
 import com.example.demo.domain.User;
 import com.example.demo.dto.AddCartItemRequest;
+import com.example.demo.dto.CartItemsRequest;
 import com.example.demo.service.AuthService;
 import com.example.demo.service.CartService;
 
@@ -38,6 +40,13 @@ public class CartController {
         return ResponseEntity.ok(cartService.addItem(user, request));
     }
 
+    // Several add / set-quantity / remove operations applied together (e.g. re-order, wishlist to cart)
+    @PatchMapping("/items")
+    public ResponseEntity<Cart> updateItems(@RequestBody @Validated CartItemsRequest request) {
+        User user = authService.getCurrentUser();
+        return ResponseEntity.ok(cartService.updateItems(user, request));
+    }
+
     @DeleteMapping("/items/{productId}")
     public ResponseEntity<Cart> removeItem(@PathVariable Long productId) {
         User user = authService.getCurrentUser();
@@ -1,7 +1,11 @@
 package com.example.demo.controller;
 
-import java.util.List;
+import java.time.Duration;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
@@ -11,12 +15,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import com.example.demo.domain.Category;
 import com.example.demo.dto.ApiResponse;
 import com.example.demo.dto.CategoryRequest;
+import com.example.demo.dto.ResourceVersion;
 import com.example.demo.service.CategoryService;
 
 import lombok.RequiredArgsConstructor;
@@ -28,9 +35,19 @@ public class CategoryController {
 
     private final CategoryService categoryService;
 
+    @Value("${app.http.cache.categories-max-age:5m}")
+    private Duration categoriesMaxAge;
+
     @GetMapping
-    public ResponseEntity<List<Category>> list() {
-        return ResponseEntity.ok(categoryService.getAll());
+    public ResponseEntity<byte[]> list(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                       WebRequest request) {
+        boolean gzip = EncodedBodies.acceptsGzip(acceptEncoding);
+        ResourceVersion version = categoryService.version();
+        CacheControl cacheControl = CacheControl.maxAge(categoriesMaxAge).cachePublic().mustRevalidate();
+        if (request.checkNotModified(EncodedBodies.etag(version.etag(), gzip), version.lastModified().toEpochMilli())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
+        return EncodedBodies.of(ResponseEntity.ok().cacheControl(cacheControl), categoryService.snapshot(), gzip);
     }
 
     @PostMapping
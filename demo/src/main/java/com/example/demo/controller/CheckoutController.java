@@ -0,0 +1,57 @@
+package com.example.demo.controller;
+
+import java.net.URI;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.domain.User;
+import com.example.demo.dto.CheckoutStatus;
+import com.example.demo.dto.CreateOrderRequest;
+import com.example.demo.service.AuthService;
+import com.example.demo.service.CheckoutPipeline;
+import com.example.demo.service.IdempotencyStore;
+
+import lombok.RequiredArgsConstructor;
+
+// Asynchronous counterpart of POST /api/orders: 202 with the order id, then poll or stream its checkout stage
+@RestController
+@RequestMapping("/api/checkouts")
+@RequiredArgsConstructor
+public class CheckoutController {
+
+    private final CheckoutPipeline checkoutPipeline;
+    private final AuthService authService;
+    private final IdempotencyStore idempotencyStore;
+
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                    @RequestBody @Validated CreateOrderRequest request) {
+        User user = authService.getCurrentUser();
+        return idempotencyStore.execute("checkouts", user.getId(), idempotencyKey, request, () -> {
+            CheckoutStatus status = checkoutPipeline.submit(user, request);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/checkouts/" + status.orderId()))
+                    .body(status);
+        });
+    }
+
+    @GetMapping("/{orderId}")
+    public ResponseEntity<CheckoutStatus> status(@PathVariable Long orderId) {
+        return ResponseEntity.ok(checkoutPipeline.status(orderId, authService.getCurrentUser()));
+    }
+
+    @GetMapping(value = "/{orderId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable Long orderId) {
+        return checkoutPipeline.stream(orderId, authService.getCurrentUser());
+    }
+}
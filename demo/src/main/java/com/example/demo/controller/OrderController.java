@@ -2,21 +2,31 @@ package com.example.demo.controller;
 
 import java.util.List;
 
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.demo.domain.Order;
 import com.example.demo.domain.User;
 import com.example.demo.dto.CreateOrderRequest;
 import com.example.demo.dto.UpdateOrderRequest;
 import com.example.demo.service.AuthService;
+import com.example.demo.service.DataFormat;
+import com.example.demo.service.ExportService;
+import com.example.demo.service.IdempotencyStore;
 import com.example.demo.service.OrderService;
 
 import lombok.RequiredArgsConstructor;
@@ -28,11 +38,16 @@ public class OrderController {
 
     private final OrderService orderService;
     private final AuthService authService;
+    private final ExportService exportService;
+    private final IdempotencyStore idempotencyStore;
 
+    // A retry carrying the same Idempotency-Key gets the first response back instead of a second order
     @PostMapping
-    public ResponseEntity<Order> create(@RequestBody @Validated CreateOrderRequest request) {
+    public ResponseEntity<?> create(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                    @RequestBody @Validated CreateOrderRequest request) {
         User user = authService.getCurrentUser();
-        return ResponseEntity.ok(orderService.createOrder(user, request));
+        return idempotencyStore.execute("orders", user.getId(), idempotencyKey, request,
+                () -> ResponseEntity.ok(orderService.createOrder(user, request)));
     }
 
     @PutMapping("/{id}")
@@ -50,6 +65,18 @@ public class OrderController {
         return ResponseEntity.ok(orderService.listUserOrders(user));
     }
 
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "format", required = false) String format,
+                                                        @RequestParam(value = "gzip", defaultValue = "false") boolean gzip) {
+        DataFormat dataFormat = DataFormat.from(format);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(dataFormat.contentType(gzip)))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(dataFormat.fileName("orders", gzip)).build().toString())
+                .body(exportService.orders(dataFormat, gzip));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Order> get(@PathVariable Long id) {
         return ResponseEntity.ok(orderService.getOrder(id));
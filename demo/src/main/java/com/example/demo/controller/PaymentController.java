@@ -6,25 +6,38 @@ import java.util.Map;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.domain.User;
+import com.example.demo.service.AuthService;
+import com.example.demo.service.IdempotencyStore;
+
 import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 
 @RestController
 @RequestMapping("/api/payments")
+@RequiredArgsConstructor
 public class PaymentController {
 
+    private final AuthService authService;
+    private final IdempotencyStore idempotencyStore;
+
     @PostMapping("/intent")
-    public ResponseEntity<Map<String, Object>> createIntent(@RequestBody PaymentIntentRequest request) {
-        // Placeholder for integrating with Stripe/another PSP later.
-        return ResponseEntity.ok(Map.of(
-                "clientSecret", "demo-secret",
-                "amount", request.getAmount(),
-                "currency", request.getCurrency()
-        ));
+    public ResponseEntity<?> createIntent(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                          @RequestBody PaymentIntentRequest request) {
+        User user = authService.getCurrentUser();
+        // Placeholder for integrating with Stripe/another PSP later; the key is what the PSP call would be sent with.
+        return idempotencyStore.execute("payment-intents", user.getId(), idempotencyKey, request,
+                () -> ResponseEntity.ok(Map.of(
+                        "clientSecret", "demo-secret",
+                        "amount", request.getAmount(),
+                        "currency", request.getCurrency()
+                )));
     }
 
     @Getter
@@ -1,9 +1,19 @@
 package com.example.demo.controller;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.MultiValueMap;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,14 +21,29 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.demo.domain.Product;
+import com.example.demo.dto.FacetCount;
+import com.example.demo.dto.FacetedPage;
+import com.example.demo.dto.ImportReport;
+import com.example.demo.dto.ProductFilterRequest;
+import com.example.demo.dto.ProductSummary;
 import com.example.demo.dto.ProductRequest;
+import com.example.demo.dto.ResourceVersion;
+import com.example.demo.dto.Suggestion;
+import com.example.demo.service.DataFormat;
+import com.example.demo.service.ExportService;
+import com.example.demo.service.ProductImportService;
 import com.example.demo.service.ProductService;
 
+import jakarta.servlet.http.HttpServletRequest;
+
 import lombok.RequiredArgsConstructor;
 
 @RestController
@@ -27,25 +52,94 @@ import lombok.RequiredArgsConstructor;
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final ExportService exportService;
+
+    @Value("${app.http.cache.products-max-age:30s}")
+    private Duration productMaxAge;
 
+    // The first page at the default size is the landing page and comes pre-serialized from the snapshot
     @GetMapping
-    public ResponseEntity<List<Product>> list() {
-        return ResponseEntity.ok(productService.getAll());
+    public ResponseEntity<?> list(@RequestParam(value = "sort", required = false) String sort,
+                                  @RequestParam(value = "cursor", required = false) String cursor,
+                                  @RequestParam(value = "limit", required = false) Integer limit,
+                                  @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if ((cursor == null || cursor.isBlank()) && limit == null) {
+            return EncodedBodies.of(ResponseEntity.ok(), productService.firstPage(sort),
+                    EncodedBodies.acceptsGzip(acceptEncoding));
+        }
+        return ResponseEntity.ok(productService.list(sort, cursor, limit));
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<Product>> search(@RequestParam("q") String keyword) {
-        return ResponseEntity.ok(productService.search(keyword));
+    public ResponseEntity<List<ProductSummary>> search(@RequestParam("q") String keyword,
+                                                       @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(productService.search(keyword, limit));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Suggestion>> suggest(@RequestParam("prefix") String prefix,
+                                                    @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(productService.suggest(prefix, limit));
+    }
+
+    // board: trending (default) or best-sellers; answered from memory
+    @GetMapping("/trending")
+    public ResponseEntity<List<ProductSummary>> trending(@RequestParam(value = "board", required = false) String board,
+                                                         @RequestParam(value = "category", required = false) Long categoryId,
+                                                         @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(productService.trending(board, categoryId, limit));
+    }
+
+    @GetMapping("/filter")
+    public ResponseEntity<FacetedPage<ProductSummary>> filter(@Validated ProductFilterRequest filter) {
+        return ResponseEntity.ok(productService.filter(filter));
+    }
+
+    @GetMapping("/attributes")
+    public ResponseEntity<Map<String, List<FacetCount>>> attributes() {
+        return ResponseEntity.ok(productService.attributes());
     }
 
+    @GetMapping("/attributes/filter")
+    public ResponseEntity<FacetedPage<ProductSummary>> filterByAttributes(@RequestParam MultiValueMap<String, String> params) {
+        return ResponseEntity.ok(productService.filterByAttributes(params));
+    }
+
+    // checkNotModified also puts ETag/Last-Modified on the response, so a hit costs one timestamp lookup
     @GetMapping("/{id}")
-    public ResponseEntity<Product> get(@PathVariable Long id) {
-        return ResponseEntity.ok(productService.getById(id));
+    public ResponseEntity<Product> get(@PathVariable Long id, WebRequest request) {
+        ResourceVersion version = productService.version(id);
+        CacheControl cacheControl = CacheControl.maxAge(productMaxAge).cachePublic().mustRevalidate();
+        if (request.checkNotModified(version.etag(), version.lastModified().toEpochMilli())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
+        Product product = productService.getById(id);
+        // Only signed-in shoppers' full page loads count towards trending; anonymous requests are free to script
+        if (request.getUserPrincipal() != null) {
+            productService.recordView(id, request.getUserPrincipal().getName());
+        }
+        return ResponseEntity.ok().cacheControl(cacheControl).body(product);
     }
 
+    @GetMapping("/{id}/related")
+    public ResponseEntity<List<ProductSummary>> related(@PathVariable Long id,
+                                                        @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(productService.related(id, limit));
+    }
+
+    // Paged like list(); the first page at the default size comes from the snapshot
     @GetMapping("/category/{categoryId}")
-    public ResponseEntity<List<Product>> byCategory(@PathVariable Long categoryId) {
-        return ResponseEntity.ok(productService.byCategory(categoryId));
+    public ResponseEntity<?> byCategory(@PathVariable Long categoryId,
+                                        @RequestParam(value = "sort", required = false) String sort,
+                                        @RequestParam(value = "cursor", required = false) String cursor,
+                                        @RequestParam(value = "limit", required = false) Integer limit,
+                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if ((cursor == null || cursor.isBlank()) && limit == null) {
+            return EncodedBodies.of(ResponseEntity.ok(), productService.firstCategoryPage(categoryId, sort),
+                    EncodedBodies.acceptsGzip(acceptEncoding));
+        }
+        return ResponseEntity.ok(productService.byCategory(categoryId, sort, cursor, limit));
     }
 
     @PostMapping
@@ -54,6 +148,27 @@ public class ProductController {
         return ResponseEntity.ok(productService.create(request));
     }
 
+    // Body is streamed straight from the request, so the upload size is not bound by the multipart limits
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson", "application/jsonl"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ImportReport> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                       HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(productImportService.importProducts(request.getInputStream(),
+                DataFormat.fromContentType(contentType)));
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "format", required = false) String format,
+                                                        @RequestParam(value = "gzip", defaultValue = "false") boolean gzip) {
+        DataFormat dataFormat = DataFormat.from(format);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(dataFormat.contentType(gzip)))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(dataFormat.fileName("products", gzip)).build().toString())
+                .body(exportService.products(dataFormat, gzip));
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Product> update(@PathVariable Long id, @RequestBody @Validated ProductRequest request) {
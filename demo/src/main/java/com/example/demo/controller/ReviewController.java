@@ -1,7 +1,11 @@
 package com.example.demo.controller;
 
+import java.time.Duration;
 import java.util.List;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,9 +15,11 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import com.example.demo.domain.Review;
 import com.example.demo.domain.User;
+import com.example.demo.dto.ResourceVersion;
 import com.example.demo.dto.ReviewRequest;
 import com.example.demo.service.AuthService;
 import com.example.demo.service.ReviewService;
@@ -28,9 +34,17 @@ public class ReviewController {
     private final ReviewService reviewService;
     private final AuthService authService;
 
+    @Value("${app.http.cache.reviews-max-age:1m}")
+    private Duration reviewsMaxAge;
+
     @GetMapping("/product/{productId}")
-    public ResponseEntity<List<Review>> list(@PathVariable Long productId) {
-        return ResponseEntity.ok(reviewService.forProduct(productId));
+    public ResponseEntity<List<Review>> list(@PathVariable Long productId, WebRequest request) {
+        ResourceVersion version = reviewService.version(productId);
+        CacheControl cacheControl = CacheControl.maxAge(reviewsMaxAge).cachePublic().mustRevalidate();
+        if (request.checkNotModified(version.etag(), version.lastModified().toEpochMilli())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().cacheControl(cacheControl).body(reviewService.forProduct(productId));
     }
 
     @PostMapping
@@ -3,16 +3,50 @@ package com.example.demo.controller;
 import java.util.Map;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.service.CartStore;
+import com.example.demo.service.CheckoutPipeline;
+import com.example.demo.service.HotStockLedger;
+import com.example.demo.service.ProductCache;
+
+import lombok.RequiredArgsConstructor;
+
 @RestController
 @RequestMapping("/api/system")
+@RequiredArgsConstructor
 public class SystemController {
 
+    private final ProductCache productCache;
+    private final HotStockLedger hotStockLedger;
+    private final CartStore cartStore;
+    private final CheckoutPipeline checkoutPipeline;
+
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> health() {
         return ResponseEntity.ok(Map.of("status", "ok"));
     }
+
+    @GetMapping("/caches")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> caches() {
+        return ResponseEntity.ok(Map.of("products", productCache.stats(), "carts", cartStore.stats()));
+    }
+
+    // Units each hot product currently holds in memory, by product id
+    @GetMapping("/hot-stock")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> hotStock() {
+        return ResponseEntity.ok(hotStockLedger.stats());
+    }
+
+    // Asynchronous checkouts in flight on this node and statuses kept for polling
+    @GetMapping("/checkouts")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> checkouts() {
+        return ResponseEntity.ok(checkoutPipeline.stats());
+    }
 }
@@ -5,6 +5,8 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -12,12 +14,14 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -30,7 +34,8 @@ import lombok.Setter;
 @AllArgsConstructor
 @Builder
 @Entity
-@Table(name = "carts")
+// Startup re-arms hold timers and the overdue-hold sweep reads from this index instead of scanning carts
+@Table(name = "carts", indexes = @Index(name = "idx_carts_hold_expires_at", columnList = "holdExpiresAt"))
 public class Cart {
 
     @Id
@@ -55,9 +60,18 @@ public class Cart {
 
     private BigDecimal discountedAmount;
 
+    // Held lines go back to stock at this instant unless the cart is touched or checked out first
+    private Instant holdExpiresAt;
+
     @Column(nullable = false)
     private Instant updatedAt;
 
+    // Bumped by every write of the cart or its lines; a writer holding an older value lost a race with another node
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Long version;
+
     @PrePersist
     public void onCreate() {
         this.updatedAt = Instant.now();
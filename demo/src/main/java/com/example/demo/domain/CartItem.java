@@ -2,6 +2,8 @@ package com.example.demo.domain;
 
 import java.math.BigDecimal;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
@@ -39,4 +41,10 @@ public class CartItem {
 
     @Column(nullable = false)
     private BigDecimal price;
+
+    // Units of quantity counted in products.held_stock for this cart until Cart.holdExpiresAt
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Integer heldQuantity = 0;
 }
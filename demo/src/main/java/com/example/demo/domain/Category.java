@@ -36,7 +36,7 @@ public class Category {
     private String description;
 
     @Builder.Default
-    @Column(columnDefinition = "LONGTEXT")
+    @Column(length = 512)
     private String image = "default-category.jpg";
 
     @Column(nullable = false, updatable = false)
@@ -0,0 +1,18 @@
+package com.example.demo.domain;
+
+// How far CheckoutPipeline got with an order; orders placed synchronously are CONFIRMED from the start
+public enum CheckoutStage {
+    // Cart repriced and copied into the order; no stock taken yet
+    ACCEPTED,
+    // Stock taken, from the cart's holds first
+    RESERVED,
+    // Coupon usage counted and the discount applied
+    COUPON_APPLIED,
+    CONFIRMED,
+    // Stopped with Order.checkoutError; whatever stock it had taken was given back
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == CONFIRMED || this == FAILED;
+    }
+}
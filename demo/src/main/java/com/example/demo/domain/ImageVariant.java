@@ -0,0 +1,55 @@
+package com.example.demo.domain;
+
+import java.util.List;
+
+public enum ImageVariant {
+    THUMBNAIL("thumb", 200),
+    MEDIUM("medium", 600);
+
+    public static final String URL_PREFIX = "/api/images/";
+
+    private final String suffix;
+    private final int width;
+
+    ImageVariant(String suffix, int width) {
+        this.suffix = suffix;
+        this.width = width;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    // "<hash>.png" -> "<hash>-thumb.png"; a variant keeps the original's format
+    public String nameFor(String originalName) {
+        int dot = originalName.lastIndexOf('.');
+        return originalName.substring(0, dot) + "-" + suffix + originalName.substring(dot);
+    }
+
+    // Only images held by the image store have variants; external URLs are returned unchanged
+    public String urlFor(String imageUrl) {
+        if (imageUrl == null || !imageUrl.startsWith(URL_PREFIX)) {
+            return imageUrl;
+        }
+        return URL_PREFIX + nameFor(imageUrl.substring(URL_PREFIX.length()));
+    }
+
+    public List<String> urlsFor(List<String> imageUrls) {
+        return imageUrls == null ? List.of() : imageUrls.stream().map(this::urlFor).toList();
+    }
+
+    public static String originalNameOf(String name) {
+        int dot = name.lastIndexOf('.');
+        int dash = name.lastIndexOf('-', dot);
+        if (dot < 0 || dash < 0) {
+            return null;
+        }
+        String suffix = name.substring(dash + 1, dot);
+        for (ImageVariant variant : values()) {
+            if (variant.suffix.equals(suffix)) {
+                return name.substring(0, dash) + name.substring(dot);
+            }
+        }
+        return null;
+    }
+}
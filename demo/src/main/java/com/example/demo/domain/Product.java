@@ -5,6 +5,10 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.hibernate.annotations.ColumnDefault;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
@@ -12,6 +16,7 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
@@ -29,7 +34,11 @@ import lombok.Setter;
 @AllArgsConstructor
 @Builder
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_created_at_id", columnList = "createdAt, id"),
+        @Index(name = "idx_products_price_id", columnList = "price, id"),
+        @Index(name = "idx_products_rating_id", columnList = "ratingAverage, id")
+})
 public class Product {
 
     @Id
@@ -53,13 +62,41 @@ public class Product {
     private Category category;
 
     @ElementCollection(fetch = FetchType.EAGER)
-    @Column(name = "image", columnDefinition = "LONGTEXT")
+    // Image URLs (usually /api/images/<sha256>.<ext>); the bytes live in ImageStorageService
+    @Column(name = "image", length = 512)
     @Builder.Default
     private List<String> images = new ArrayList<>();
 
+    // Denormalized first entry of images so list projections avoid the element collection
+    @Column(length = 512)
+    private String primaryImage;
+
+    // On-hand count. Only SQL changes it after insert (relative updates), so saving a stale copy of the
+    // entity never overwrites units sold in the meantime.
+    @Column(updatable = false)
     @Builder.Default
     private Integer stock = 0;
 
+    // Flash-sale mode: checkouts draw stock from HotStockLedger instead of locking this row
+    @Column(nullable = false)
+    @ColumnDefault("false")
+    @Builder.Default
+    private Boolean hotSku = false;
+
+    // Part of stock currently handed to the in-memory ledger; never more than stock. Only SQL moves it.
+    @JsonIgnore
+    @Column(nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Integer leasedStock = 0;
+
+    // Part of stock held for carts (CartHoldService) until checkout or expiry. Only SQL moves it.
+    @JsonIgnore
+    @Column(nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Integer heldStock = 0;
+
     @Builder.Default
     private Double ratingAverage = 0.0;
 
@@ -81,10 +118,24 @@ public class Product {
         Instant now = Instant.now();
         this.createdAt = now;
         this.updatedAt = now;
+        this.primaryImage = firstImage();
     }
 
     @PreUpdate
     public void onUpdate() {
         this.updatedAt = Instant.now();
+        this.primaryImage = firstImage();
+    }
+
+    private String firstImage() {
+        return images == null || images.isEmpty() ? null : images.get(0);
+    }
+
+    public List<String> getThumbnails() {
+        return ImageVariant.THUMBNAIL.urlsFor(images);
+    }
+
+    public List<String> getMediumImages() {
+        return ImageVariant.MEDIUM.urlsFor(images);
     }
 }
@@ -0,0 +1,31 @@
+package com.example.demo.domain;
+
+public enum ProductSort {
+    NEWEST("createdAt", true),
+    PRICE_ASC("price", false),
+    PRICE_DESC("price", true),
+    RATING("ratingAverage", true);
+
+    private final String property;
+    private final boolean descending;
+
+    ProductSort(String property, boolean descending) {
+        this.property = property;
+        this.descending = descending;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public static ProductSort from(String value) {
+        if (value == null || value.isBlank()) {
+            return NEWEST;
+        }
+        return ProductSort.valueOf(value.trim().toUpperCase());
+    }
+}
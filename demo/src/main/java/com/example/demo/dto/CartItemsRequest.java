@@ -0,0 +1,44 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+// PATCH /api/cart/items: operations apply in order, all or nothing
+@Getter
+@Setter
+public class CartItemsRequest {
+
+    public enum Op {
+        // quantity is added to the line (created if missing)
+        ADD,
+        // quantity replaces the line's quantity; 0 removes it
+        SET,
+        // quantity is ignored
+        REMOVE
+    }
+
+    @Getter
+    @Setter
+    public static class Operation {
+        @NotNull
+        private Op op;
+
+        @NotNull
+        private Long productId;
+
+        @Min(0)
+        private Integer quantity;
+    }
+
+    @NotEmpty
+    @Size(max = 100)
+    @Valid
+    private List<Operation> operations;
+}
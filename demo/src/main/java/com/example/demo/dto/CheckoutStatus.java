@@ -0,0 +1,6 @@
+package com.example.demo.dto;
+
+import com.example.demo.domain.CheckoutStage;
+
+public record CheckoutStatus(Long orderId, CheckoutStage stage, String error) {
+}
@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class CursorPage<T> {
+    private final List<T> data;
+    private final String nextCursor;
+    private final boolean hasNext;
+    private final int limit;
+}
@@ -0,0 +1,12 @@
+package com.example.demo.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class FacetCount {
+    private final String value;
+    private final String label;
+    private final long count;
+}
@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class FacetedPage<T> {
+    private final List<T> data;
+    private final long total;
+    private final int page;
+    private final int size;
+    private final Map<String, List<FacetCount>> facets;
+}
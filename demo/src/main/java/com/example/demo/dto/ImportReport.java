@@ -0,0 +1,32 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class ImportReport {
+    private final String format;
+    private final long rows;
+    private final long imported;
+    private final long failed;
+    private final long elapsedMs;
+    private final List<Batch> batches;
+
+    // Rows are numbered from 1 in input order (CSV header and blank lines excluded)
+    @Getter
+    @Builder
+    public static class Batch {
+        private final int batch;
+        private final long firstRow;
+        private final long lastRow;
+        private final int imported;
+        private final int failed;
+        private final List<RowError> errors;
+    }
+
+    public record RowError(long row, String message) {
+    }
+}
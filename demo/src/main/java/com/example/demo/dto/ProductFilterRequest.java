@@ -0,0 +1,28 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class ProductFilterRequest {
+    private List<Long> category;
+
+    // Price band keys as reported in the "price" facet, e.g. "10-100" or "1000+"
+    private List<String> price;
+
+    @Min(1)
+    @Max(5)
+    private Integer minRating;
+
+    private Boolean inStock;
+
+    @Min(0)
+    private int page = 0;
+
+    private Integer size;
+}
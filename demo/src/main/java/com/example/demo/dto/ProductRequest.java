@@ -32,6 +32,11 @@ public class ProductRequest {
 
     private Integer stock;
 
+    // Stock as the client last read it; an update changes stock only when this is sent
+    private Integer originalStock;
+
+    private Boolean hotSku;
+
     private String specifications;
 
     private List<String> images;
@@ -0,0 +1,42 @@
+package com.example.demo.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import com.example.demo.domain.ImageVariant;
+import com.example.demo.domain.Product;
+
+public record ProductSummary(
+        Long id,
+        String name,
+        BigDecimal price,
+        BigDecimal salePrice,
+        BigDecimal effectivePrice,
+        String image,
+        String thumbnail,
+        Double ratingAverage,
+        Long ratingCount,
+        boolean inStock,
+        Long categoryId,
+        String categoryName,
+        Instant createdAt) {
+
+    // Target of the JPQL constructor expressions in ProductRepository
+    public ProductSummary(Long id, String name, BigDecimal price, BigDecimal salePrice, String image,
+                          Double ratingAverage, Long ratingCount, Integer stock,
+                          Long categoryId, String categoryName, Instant createdAt) {
+        this(id, name, price, salePrice,
+                salePrice != null && salePrice.compareTo(BigDecimal.ZERO) > 0 ? salePrice : price,
+                image, ImageVariant.THUMBNAIL.urlFor(image),
+                ratingAverage, ratingCount, stock != null && stock > 0,
+                categoryId, categoryName, createdAt);
+    }
+
+    public static ProductSummary of(Product product) {
+        return new ProductSummary(product.getId(), product.getName(), product.getPrice(), product.getSalePrice(),
+                product.getPrimaryImage(), product.getRatingAverage(), product.getRatingCount(), product.getStock(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getCategory() != null ? product.getCategory().getName() : null,
+                product.getCreatedAt());
+    }
+}
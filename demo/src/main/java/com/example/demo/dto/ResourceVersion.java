@@ -0,0 +1,23 @@
+package com.example.demo.dto;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+// Strong validator for a catalog resource: the ETag changes whenever any timestamp that feeds the
+// representation changes, Last-Modified is the newest of them
+public record ResourceVersion(String etag, Instant lastModified) {
+
+    public static ResourceVersion of(String tag, Instant... timestamps) {
+        String stamps = Arrays.stream(timestamps)
+                .map(timestamp -> timestamp != null ? Long.toHexString(timestamp.toEpochMilli()) : "0")
+                .collect(Collectors.joining("-"));
+        Instant lastModified = Arrays.stream(timestamps)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .orElse(Instant.EPOCH);
+        return new ResourceVersion("\"" + tag + "-" + stamps + "\"", lastModified);
+    }
+}
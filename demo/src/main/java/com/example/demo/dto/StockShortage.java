@@ -0,0 +1,4 @@
+package com.example.demo.dto;
+
+public record StockShortage(Long productId, String name, int requested, int available) {
+}
@@ -0,0 +1,14 @@
+package com.example.demo.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class StoredImage {
+    private final String name;
+    private final String hash;
+    private final String contentType;
+    private final long size;
+    private final String url;
+}
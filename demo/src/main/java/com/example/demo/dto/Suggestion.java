@@ -0,0 +1,5 @@
+package com.example.demo.dto;
+
+// type is "product" or "category"; image is the product thumbnail, null for categories
+public record Suggestion(String type, Long id, String text, String image) {
+}
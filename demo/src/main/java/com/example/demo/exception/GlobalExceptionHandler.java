@@ -3,6 +3,8 @@ package com.example.demo.exception;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -23,6 +25,41 @@ public class GlobalExceptionHandler {
         return build(HttpStatus.BAD_REQUEST, ex.getMessage());
     }
 
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<Map<String, String>> handleConflict(ConflictException ex) {
+        return build(HttpStatus.CONFLICT, ex.getMessage());
+    }
+
+    // Backpressure: the client should come back after Retry-After seconds
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<Map<String, String>> handleBusy(ServiceBusyException ex) {
+        Map<String, String> payload = new HashMap<>();
+        payload.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(payload);
+    }
+
+    @ExceptionHandler(OutOfStockException.class)
+    public ResponseEntity<Map<String, Object>> handleOutOfStock(OutOfStockException ex) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("message", ex.getMessage());
+        payload.put("shortages", ex.getShortages());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(payload);
+    }
+
+    @ExceptionHandler(PriceChangedException.class)
+    public ResponseEntity<Map<String, Object>> handlePriceChanged(PriceChangedException ex) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("message", ex.getMessage());
+        payload.put("changes", ex.getChanges());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(payload);
+    }
+
+    // Still losing to concurrent writers after the bounded retries; the client may simply resend
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, String>> handleConcurrentUpdate(OptimisticLockingFailureException ex) {
+        return build(HttpStatus.CONFLICT, "The cart was changed by another request, please try again");
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, String>> handleValidation(MethodArgumentNotValidException ex) {
         Map<String, String> errors = new HashMap<>();
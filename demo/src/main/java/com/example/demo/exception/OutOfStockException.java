@@ -0,0 +1,18 @@
+package com.example.demo.exception;
+
+import java.util.List;
+
+import com.example.demo.dto.StockShortage;
+
+public class OutOfStockException extends RuntimeException {
+    private final List<StockShortage> shortages;
+
+    public OutOfStockException(List<StockShortage> shortages) {
+        super("Insufficient stock");
+        this.shortages = shortages;
+    }
+
+    public List<StockShortage> getShortages() {
+        return shortages;
+    }
+}
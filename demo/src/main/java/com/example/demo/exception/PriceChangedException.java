@@ -0,0 +1,18 @@
+package com.example.demo.exception;
+
+import java.util.List;
+
+import com.example.demo.dto.PriceChange;
+
+public class PriceChangedException extends RuntimeException {
+    private final List<PriceChange> changes;
+
+    public PriceChangedException(List<PriceChange> changes) {
+        super("Prices changed since the items were added to the cart");
+        this.changes = changes;
+    }
+
+    public List<PriceChange> getChanges() {
+        return changes;
+    }
+}
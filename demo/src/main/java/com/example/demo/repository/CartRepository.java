@@ -2,6 +2,7 @@ package com.example.demo.repository;
 
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import com.example.demo.domain.Cart;
@@ -9,4 +10,12 @@ import com.example.demo.domain.User;
 
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUser(User user);
+
+    // CartStore loads a cart with its lines in one query; products are taken from ProductCache
+    @EntityGraph(attributePaths = "items")
+    Optional<Cart> findWithItemsByUserId(Long userId);
+
+    // Same, for callers that only know the user id
+    @EntityGraph(attributePaths = {"items", "user"})
+    Optional<Cart> findWithItemsAndUserByUserId(Long userId);
 }
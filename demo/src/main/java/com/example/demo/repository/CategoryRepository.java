@@ -1,11 +1,19 @@
 package com.example.demo.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.example.demo.domain.Category;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     Optional<Category> findByNameIgnoreCase(String name);
+
+    @Query("select count(c) as count, max(c.updatedAt) as lastModified from Category c")
+    CollectionVersion findVersion();
+
+    @Query("select c from Category c where c.image like 'data:%'")
+    List<Category> findWithInlineImage();
 }
@@ -0,0 +1,10 @@
+package com.example.demo.repository;
+
+import java.time.Instant;
+
+// count catches deletions, which leave max(updatedAt) untouched
+public interface CollectionVersion {
+    long getCount();
+
+    Instant getLastModified();
+}
@@ -2,16 +2,24 @@ package com.example.demo.repository;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 
 import com.example.demo.domain.Order;
 import com.example.demo.domain.PaymentStatus;
 import com.example.demo.domain.User;
 
+import jakarta.persistence.LockModeType;
+
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUser(User user);
     List<Order> findByPaymentStatus(PaymentStatus status);
     List<Order> findByCreatedAtAfter(Instant after);
     List<Order> findTop10ByOrderByCreatedAtDesc();
+
+    // A checkout stage runs on the order row locked, so two workers can never run the same stage
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Order> findLockedById(Long id);
 }
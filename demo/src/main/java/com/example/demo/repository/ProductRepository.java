@@ -1,13 +1,63 @@
 package com.example.demo.repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.domain.Category;
 import com.example.demo.domain.Product;
+import com.example.demo.dto.ProductSummary;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductSummaryRepository {
     List<Product> findByCategory(Category category);
     List<Product> findByNameContainingIgnoreCase(String name);
+    Window<Product> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = {"category", "images"})
+    Optional<Product> findWithDetailsById(Long id);
+
+    @EntityGraph(attributePaths = {"category", "images"})
+    List<Product> findWithDetailsByIdIn(Collection<Long> ids);
+
+    interface Timestamps {
+        Instant getUpdatedAt();
+
+        Instant getCategoryUpdatedAt();
+    }
+
+    // The product JSON embeds its category, so both timestamps feed the validator
+    @Query("select p.updatedAt as updatedAt, c.updatedAt as categoryUpdatedAt from Product p join p.category c where p.id = :id")
+    Optional<Timestamps> findTimestampsById(@Param("id") Long id);
+
+    @Query("select distinct p.id from Product p join p.images i where i like 'data:%'")
+    List<Long> findIdsWithInlineImages();
+
+    @Query(SUMMARY_SELECT + " where p.id in :ids")
+    List<ProductSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Relative, so checkouts committed since the caller read the row still count
+    @Transactional
+    @Modifying
+    @Query(value = "update products set stock = greatest(stock + :delta, 0), updated_at = utc_timestamp(6) "
+            + "where id = :id", nativeQuery = true)
+    int adjustStock(@Param("id") Long id, @Param("delta") int delta);
+
+    // Native because MySQL rejects a correlated subquery over the table being updated (error 1093)
+    @Modifying
+    @Query(value = "update products p set p.primary_image = ("
+            + "select min(pi.image) from product_images pi where pi.product_id = p.id and pi.image not like 'data:%') "
+            + "where p.primary_image is null", nativeQuery = true)
+    int backfillPrimaryImages();
 }
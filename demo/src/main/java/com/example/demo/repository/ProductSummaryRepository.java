@@ -0,0 +1,18 @@
+package com.example.demo.repository;
+
+import java.util.List;
+
+import com.example.demo.domain.ProductSort;
+import com.example.demo.dto.ProductSummary;
+
+public interface ProductSummaryRepository {
+
+    String SUMMARY_SELECT = "select new com.example.demo.dto.ProductSummary("
+            + "p.id, p.name, p.price, p.salePrice, p.primaryImage, p.ratingAverage, p.ratingCount, p.stock, "
+            + "c.id, c.name, p.createdAt) from Product p join p.category c";
+
+    // cursorValue/cursorId are the sort key and id of the last row of the previous page, or null for the first page;
+    // categoryId null means every category
+    List<ProductSummary> findSummaryPage(ProductSort sort, Long categoryId, Object cursorValue, Long cursorId,
+                                         int limit);
+}
@@ -0,0 +1,46 @@
+package com.example.demo.repository;
+
+import java.util.List;
+
+import com.example.demo.domain.ProductSort;
+import com.example.demo.dto.ProductSummary;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+public class ProductSummaryRepositoryImpl implements ProductSummaryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ProductSummary> findSummaryPage(ProductSort sort, Long categoryId, Object cursorValue, Long cursorId,
+                                                int limit) {
+        String property = "p." + sort.getProperty();
+        String direction = sort.isDescending() ? " desc" : " asc";
+        String after = sort.isDescending() ? " < " : " > ";
+
+        StringBuilder jpql = new StringBuilder(SUMMARY_SELECT);
+        String clause = " where ";
+        if (categoryId != null) {
+            jpql.append(clause).append("c.id = :categoryId");
+            clause = " and ";
+        }
+        if (cursorId != null) {
+            jpql.append(clause).append("(").append(property).append(after).append(":value")
+                    .append(" or (").append(property).append(" = :value and p.id").append(after).append(":id))");
+        }
+        jpql.append(" order by ").append(property).append(direction).append(", p.id").append(direction);
+
+        TypedQuery<ProductSummary> query = entityManager.createQuery(jpql.toString(), ProductSummary.class);
+        if (categoryId != null) {
+            query.setParameter("categoryId", categoryId);
+        }
+        if (cursorId != null) {
+            query.setParameter("value", cursorValue);
+            query.setParameter("id", cursorId);
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+}
@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.demo.domain.Product;
 import com.example.demo.domain.Review;
@@ -12,4 +14,7 @@ import com.example.demo.domain.User;
 public interface ReviewRepository extends JpaRepository<Review, Long> {
     List<Review> findByProduct(Product product);
     Optional<Review> findByProductAndUser(Product product, User user);
+
+    @Query("select count(r) as count, max(r.updatedAt) as lastModified from Review r where r.product.id = :productId")
+    CollectionVersion findVersionByProductId(@Param("productId") Long productId);
 }
@@ -0,0 +1,273 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.domain.Cart;
+import com.example.demo.domain.CartItem;
+import com.example.demo.domain.Product;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Stock held for cart lines between add-to-cart and checkout. Adding an item counts its units in
+ * products.held_stock right away (CartItem.heldQuantity), so nobody else can buy them, and (re)starts the cart's
+ * window; checkout takes the held units over, removing a line gives them back. stock itself stays the on-hand
+ * count, so an admin setting it while units are held does not change what the holds hand back.
+ *
+ * Expiry runs off a TimingWheel keyed by user id instead of scanning carts: every tick hands the due carts over,
+ * and each one's holds are given back in a short transaction of its own, so a cart another node changed in the
+ * meantime is redone on its fresh row (ConflictRetry) without holding back the others. Carts are changed through
+ * CartStore like any other mutation, so expiry serializes with the owner's own requests on the cart lock.
+ *
+ * Timers live in the memory of the node that set them. A periodic sweep over idx_carts_hold_expires_at releases
+ * holds left overdue by a node that died or restarted, or by a timer lost otherwise; it only takes carts overdue
+ * by more than a sweep interval, so live timers normally get there first.
+ *
+ * Hot products (HotStockLedger) are never held; their stock is meant for whoever checks out first.
+ */
+@Slf4j
+@Service
+public class CartHoldService {
+
+    private static final String HOLDS = "select user_id, hold_expires_at from carts where hold_expires_at is not null";
+    private static final String OVERDUE = """
+            select user_id from carts
+            where hold_expires_at < utc_timestamp() - interval :graceSeconds second
+            order by hold_expires_at
+            limit :limit""";
+
+    // Ticks to wait before retrying carts whose release failed
+    private static final int RETRY_TICKS = 30;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ConflictRetry conflictRetry;
+    private final InventoryService inventoryService;
+    private final CartStore cartStore;
+    private final Duration duration;
+    private final long tickMillis;
+    private final int batchSize;
+    private final long sweepSeconds;
+    private final TimingWheel<Long> wheel;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("cart-hold-ticker").daemon(true).factory());
+
+    public CartHoldService(NamedParameterJdbcTemplate jdbcTemplate,
+                           ConflictRetry conflictRetry,
+                           InventoryService inventoryService,
+                           CartStore cartStore,
+                           @Value("${app.cart.hold.duration:15m}") Duration duration,
+                           @Value("${app.cart.hold.tick:1s}") Duration tick,
+                           @Value("${app.cart.hold.release-batch-size:500}") int batchSize,
+                           @Value("${app.cart.hold.sweep-interval:1m}") Duration sweepInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.conflictRetry = conflictRetry;
+        this.inventoryService = inventoryService;
+        this.cartStore = cartStore;
+        this.duration = duration;
+        this.tickMillis = tick.toMillis();
+        this.batchSize = batchSize;
+        this.sweepSeconds = sweepInterval.toSeconds();
+        this.wheel = new TimingWheel<>(tickMillis, System.currentTimeMillis());
+        ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        // Same thread as the ticker, so a sweep never expires carts concurrently with a tick
+        long sweepMillis = sweepInterval.toMillis();
+        ticker.scheduleWithFixedDelay(this::sweepQuietly, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // In the caller's transaction, with the cart row locked; a shortage throws OutOfStockException
+    public void hold(Cart cart, CartItem item, Product product, int quantity) {
+        if (!Boolean.TRUE.equals(product.getHotSku())) {
+            inventoryService.hold(Map.of(product.getId(), quantity));
+            item.setHeldQuantity(item.getHeldQuantity() + quantity);
+        }
+        extend(cart);
+    }
+
+    // Makes the held units of lines leaving the cart free again
+    public void release(Collection<CartItem> items) {
+        Map<Long, Integer> held = takeHeld(items);
+        if (!held.isEmpty()) {
+            inventoryService.unhold(held);
+        }
+    }
+
+    // After several lines changed at once: growth is held (one stock batch), shrinkage gives back held units above
+    // the new quantity. Lines at quantity 0 give back everything; the caller drops them afterwards.
+    public void adjust(Cart cart, Map<Long, Integer> previousQuantities) {
+        Map<Long, Integer> toHold = new HashMap<>();
+        Map<Long, Integer> toRelease = new HashMap<>();
+        for (CartItem item : cart.getItems()) {
+            Long productId = item.getProduct().getId();
+            int grown = item.getQuantity() - previousQuantities.getOrDefault(productId, 0);
+            if (grown > 0 && !Boolean.TRUE.equals(item.getProduct().getHotSku())) {
+                toHold.put(productId, grown);
+                item.setHeldQuantity(item.getHeldQuantity() + grown);
+            } else if (item.getHeldQuantity() > item.getQuantity()) {
+                toRelease.put(productId, item.getHeldQuantity() - item.getQuantity());
+                item.setHeldQuantity(item.getQuantity());
+            }
+        }
+        if (!toRelease.isEmpty()) {
+            inventoryService.unhold(toRelease);
+        }
+        if (!toHold.isEmpty()) {
+            inventoryService.hold(toHold);
+        }
+        extend(cart);
+    }
+
+    // Every change to a cart restarts its window; a cart holding nothing has no timer
+    public void extend(Cart cart) {
+        Long userId = cart.getUser().getId();
+        boolean holding = cart.getItems().stream().anyMatch(item -> item.getHeldQuantity() > 0);
+        if (!holding) {
+            cart.setHoldExpiresAt(null);
+            AfterCommit.run(() -> wheel.cancel(userId));
+            return;
+        }
+        Instant expiresAt = Instant.now().plus(duration);
+        cart.setHoldExpiresAt(expiresAt);
+        AfterCommit.run(() -> wheel.schedule(userId, expiresAt.toEpochMilli()));
+    }
+
+    // Checkout: the order takes over what the cart holds, whether or not its window has run out yet
+    public Map<Long, Integer> claim(Cart cart) {
+        Long userId = cart.getUser().getId();
+        Map<Long, Integer> held = takeHeld(cart.getItems());
+        cart.setHoldExpiresAt(null);
+        AfterCommit.run(() -> wheel.cancel(userId));
+        return held;
+    }
+
+    // Asynchronous checkout: the order takes over held units of the lines it ordered, no more than it ordered, as
+    // the cart may have changed since. The caller lowers the line quantities and re-arms the window.
+    public Map<Long, Integer> claim(Cart cart, Map<Long, Integer> quantities) {
+        Map<Long, Integer> wanted = new HashMap<>(quantities);
+        Map<Long, Integer> held = new HashMap<>();
+        for (CartItem item : cart.getItems()) {
+            Long productId = item.getProduct().getId();
+            int taken = Math.min(item.getHeldQuantity(), wanted.getOrDefault(productId, 0));
+            if (taken > 0) {
+                item.setHeldQuantity(item.getHeldQuantity() - taken);
+                wanted.merge(productId, -taken, Integer::sum);
+                held.merge(productId, taken, Integer::sum);
+            }
+        }
+        return held;
+    }
+
+    // Timers live in memory only; holds that outlived the previous run are re-armed (or expire on the next tick)
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        int[] carts = {0};
+        jdbcTemplate.getJdbcTemplate().query(HOLDS, rs -> {
+            wheel.schedule(rs.getLong(1), rs.getTimestamp(2, utc).getTime());
+            carts[0]++;
+        });
+        if (carts[0] > 0) {
+            log.info("Re-armed stock hold timers for {} carts", carts[0]);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    private void tick() {
+        expire(wheel.advance(System.currentTimeMillis()));
+    }
+
+    // One batch per run, oldest first; carts extended in the meantime are left alone by expire()
+    private void sweep() {
+        List<Long> overdue = jdbcTemplate.queryForList(OVERDUE, new MapSqlParameterSource()
+                .addValue("graceSeconds", sweepSeconds)
+                .addValue("limit", batchSize), Long.class);
+        if (!overdue.isEmpty()) {
+            expire(overdue);
+            log.info("Swept {} carts with overdue stock holds", overdue.size());
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException ex) {
+            log.warn("Cart hold sweep failed; will retry next interval", ex);
+        }
+    }
+
+    // Carts that still fail after ConflictRetry's attempts are tried again a few ticks later
+    private void expire(List<Long> userIds) {
+        long now = System.currentTimeMillis();
+        int failed = 0;
+        RuntimeException failure = null;
+        for (Long userId : userIds) {
+            try {
+                Long later = conflictRetry.run(() -> expire(userId, now));
+                if (later != null) {
+                    // Extended since this timer was set (normally already re-armed; this covers a retry that
+                    // overwrote it)
+                    wheel.schedule(userId, later);
+                }
+            } catch (RuntimeException ex) {
+                failed++;
+                failure = ex;
+                wheel.schedule(userId, now + RETRY_TICKS * tickMillis);
+            }
+        }
+        if (failed > 0) {
+            log.warn("Could not release expired stock holds of {} of {} carts; retrying", failed, userIds.size(),
+                    failure);
+        }
+    }
+
+    // In its own transaction; returns the new deadline of a cart whose window was extended, otherwise null
+    private Long expire(Long userId, long now) {
+        return cartStore.updateIfPresent(userId, cart -> {
+            Instant expiresAt = cart.getHoldExpiresAt();
+            if (expiresAt == null) {
+                return null;
+            }
+            if (expiresAt.toEpochMilli() > now) {
+                return expiresAt.toEpochMilli();
+            }
+            Map<Long, Integer> held = takeHeld(cart.getItems());
+            if (!held.isEmpty()) {
+                inventoryService.unhold(held);
+            }
+            cart.setHoldExpiresAt(null);
+            return null;
+        });
+    }
+
+    private Map<Long, Integer> takeHeld(Collection<CartItem> items) {
+        Map<Long, Integer> held = new HashMap<>();
+        for (CartItem item : items) {
+            if (item.getHeldQuantity() > 0) {
+                held.merge(item.getProduct().getId(), item.getHeldQuantity(), Integer::sum);
+                item.setHeldQuantity(0);
+            }
+        }
+        return held;
+    }
+}
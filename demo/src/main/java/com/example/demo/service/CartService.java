@@ -1,10 +1,17 @@
 package com.example.demo.service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.example.demo.domain.Cart;
 import com.example.demo.domain.CartItem;
@@ -13,115 +20,237 @@ import com.example.demo.domain.User;
 import com.example.demo.domain.Coupon;
 import com.example.demo.dto.AddCartItemRequest;
 import com.example.demo.dto.ApplyCouponRequest;
-import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.dto.CartItemsRequest;
+import com.example.demo.dto.PriceChange;
+import com.example.demo.dto.StockShortage;
 import com.example.demo.exception.BadRequestException;
-import com.example.demo.repository.CartRepository;
-import com.example.demo.repository.ProductRepository;
+import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.repository.CouponRepository;
 
 import lombok.RequiredArgsConstructor;
 
+// Mutations run in CartStore's own transaction, which is redone when another node wrote the cart first
 @Service
 @RequiredArgsConstructor
 public class CartService {
 
-    private final CartRepository cartRepository;
-    private final ProductRepository productRepository;
+    private static final String CURRENT = """
+            select id, name, price, sale_price, hot_sku, stock - leased_stock - held_stock as free
+            from products where id in (:ids)""";
+
+    // Lines whose snapshot price no longer matches the catalog, and lines stock can no longer cover
+    public record Quote(List<PriceChange> priceChanges, List<StockShortage> shortages) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final CartStore cartStore;
     private final CouponRepository couponRepository;
+    private final ProductCache productCache;
+    private final CartHoldService cartHoldService;
 
-    @Transactional
     public Cart addItem(User user, AddCartItemRequest request) {
-        Cart cart = getOrCreateCart(user);
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
-
-        CartItem existing = cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(product.getId()))
-                .findFirst()
-                .orElse(null);
-
-        if (existing == null) {
-            cart.getItems().add(CartItem.builder()
-                    .product(product)
-                    .quantity(request.getQuantity())
-                    .price(product.getSalePrice() != null && product.getSalePrice().doubleValue() > 0
-                            ? product.getSalePrice()
-                            : product.getPrice())
-                    .build());
-        } else {
-            existing.setQuantity(existing.getQuantity() + request.getQuantity());
-        }
+        Product product = productCache.get(request.getProductId());
+        return cartStore.update(user, cart -> {
+            CartItem existing = cart.getItems().stream()
+                    .filter(item -> item.getProduct().getId().equals(product.getId()))
+                    .findFirst()
+                    .orElse(null);
 
-        recalculate(cart);
-        return cartRepository.save(cart);
+            if (existing == null) {
+                existing = CartItem.builder()
+                        .product(product)
+                        .quantity(request.getQuantity())
+                        .price(unitPrice(product.getPrice(), product.getSalePrice()))
+                        .build();
+                cart.getItems().add(existing);
+            } else {
+                existing.setQuantity(existing.getQuantity() + request.getQuantity());
+            }
+            cartHoldService.hold(cart, existing, product, request.getQuantity());
+
+            recalculate(cart);
+            return cart;
+        });
     }
 
-    @Transactional
     public Cart removeItem(User user, Long productId) {
-        Cart cart = getOrCreateCart(user);
-        Iterator<CartItem> iterator = cart.getItems().iterator();
-        while (iterator.hasNext()) {
-            CartItem item = iterator.next();
-            if (item.getProduct().getId().equals(productId)) {
-                iterator.remove();
+        return cartStore.update(user, cart -> {
+            List<CartItem> removed = new ArrayList<>();
+            Iterator<CartItem> iterator = cart.getItems().iterator();
+            while (iterator.hasNext()) {
+                CartItem item = iterator.next();
+                if (item.getProduct().getId().equals(productId)) {
+                    removed.add(item);
+                    iterator.remove();
+                }
             }
-        }
-        recalculate(cart);
-        return cartRepository.save(cart);
+            cartHoldService.release(removed);
+            cartHoldService.extend(cart);
+            recalculate(cart);
+            return cart;
+        });
+    }
+
+    // One transaction, one product lookup, one stock batch each way and one recalculation for the whole list
+    public Cart updateItems(User user, CartItemsRequest request) {
+        Map<Long, Product> products = productCache.getAll(request.getOperations().stream()
+                .filter(operation -> operation.getOp() != CartItemsRequest.Op.REMOVE)
+                .map(CartItemsRequest.Operation::getProductId)
+                .collect(Collectors.toSet()));
+        return cartStore.update(user, cart -> {
+            Map<Long, CartItem> lines = new LinkedHashMap<>();
+            Map<Long, Integer> previousQuantities = new HashMap<>();
+            for (CartItem item : cart.getItems()) {
+                lines.put(item.getProduct().getId(), item);
+                previousQuantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+            }
+
+            for (CartItemsRequest.Operation operation : request.getOperations()) {
+                Long productId = operation.getProductId();
+                if (operation.getOp() == CartItemsRequest.Op.REMOVE) {
+                    CartItem line = lines.get(productId);
+                    if (line != null) {
+                        line.setQuantity(0);
+                    }
+                    continue;
+                }
+                Integer quantity = operation.getQuantity();
+                if (quantity == null || (operation.getOp() == CartItemsRequest.Op.ADD && quantity < 1)) {
+                    throw new BadRequestException("Quantity is required for " + operation.getOp() + " of product "
+                            + productId);
+                }
+                Product product = products.get(productId);
+                if (product == null) {
+                    throw new ResourceNotFoundException("Product not found");
+                }
+                CartItem line = lines.computeIfAbsent(productId, id -> CartItem.builder()
+                        .product(product)
+                        .quantity(0)
+                        .price(unitPrice(product.getPrice(), product.getSalePrice()))
+                        .build());
+                line.setQuantity(operation.getOp() == CartItemsRequest.Op.ADD
+                        ? line.getQuantity() + quantity
+                        : quantity);
+            }
+
+            cart.setItems(new ArrayList<>(lines.values()));
+            cartHoldService.adjust(cart, previousQuantities);
+            cart.getItems().removeIf(item -> item.getQuantity() == 0);
+            recalculate(cart);
+            return cart;
+        });
     }
 
-    @Transactional
+    // Served from memory; a user who never shopped gets an empty cart that is not stored until it changes
     public Cart getCart(User user) {
-        return getOrCreateCart(user);
+        return cartStore.get(user);
     }
 
-    @Transactional
     public void clear(User user) {
-        Cart cart = getOrCreateCart(user);
-        cart.getItems().clear();
-        recalculate(cart);
-        cartRepository.save(cart);
+        cartStore.update(user, cart -> {
+            cartHoldService.release(cart.getItems());
+            cart.getItems().clear();
+            cartHoldService.extend(cart);
+            recalculate(cart);
+            return cart;
+        });
     }
 
-    @Transactional
+    // Written through: the usage count commits with the cart and is never counted again by a redo
     public Cart applyCoupon(User user, ApplyCouponRequest request) {
-        Cart cart = getOrCreateCart(user);
-        if (cart.getItems().isEmpty()) {
-            throw new BadRequestException("Cart is empty");
-        }
+        return cartStore.updateAndWrite(user, cart -> {
+            if (cart.getItems().isEmpty()) {
+                throw new BadRequestException("Cart is empty");
+            }
 
-        Coupon coupon = couponRepository.findByCodeIgnoreCase(request.getCode())
-                .orElseThrow(() -> new BadRequestException("Invalid coupon code"));
+            Coupon coupon = couponRepository.findByCodeIgnoreCase(request.getCode())
+                    .orElseThrow(() -> new BadRequestException("Invalid coupon code"));
 
-        if (!coupon.isValid(cart.getTotalAmount())) {
-            throw new BadRequestException("Coupon is expired or invalid for this order");
-        }
+            if (!coupon.isValid(cart.getTotalAmount())) {
+                throw new BadRequestException("Coupon is expired or invalid for this order");
+            }
 
-        cart.setCouponCode(coupon.getCode());
-        cart.setDiscountAmount(coupon.calculateDiscount(cart.getTotalAmount()));
-        recalculate(cart);
+            cart.setCouponCode(coupon.getCode());
+            cart.setDiscountAmount(coupon.calculateDiscount(cart.getTotalAmount()));
+            recalculate(cart);
 
-        // increment usage if limit is set
-        if (coupon.getUsageLimit() != null) {
-            coupon.setUsageCount(coupon.getUsageCount() + 1);
-            couponRepository.save(coupon);
-        }
+            // increment usage if limit is set
+            if (coupon.getUsageLimit() != null) {
+                coupon.setUsageCount(coupon.getUsageCount() + 1);
+                couponRepository.save(coupon);
+            }
 
-        return cartRepository.save(cart);
+            return cart;
+        });
     }
 
-    @Transactional
     public Cart removeCoupon(User user) {
-        Cart cart = getOrCreateCart(user);
-        cart.setCouponCode(null);
-        cart.setDiscountAmount(null);
+        return cartStore.update(user, cart -> {
+            cart.setCouponCode(null);
+            cart.setDiscountAmount(null);
+            recalculate(cart);
+            return cart;
+        });
+    }
+
+    // Checkout's pricing stage: one query reads price, sale price and free stock for every line at once.
+    // Line prices and totals are brought up to date in place; the caller decides whether a change is fatal.
+    public Quote quote(Cart cart) {
+        Map<Long, CartItem> lines = new HashMap<>();
+        cart.getItems().forEach(item -> lines.put(item.getProduct().getId(), item));
+        if (lines.isEmpty()) {
+            return new Quote(List.of(), List.of());
+        }
+        List<PriceChange> priceChanges = new ArrayList<>();
+        List<StockShortage> shortages = new ArrayList<>();
+        jdbcTemplate.query(CURRENT, new MapSqlParameterSource("ids", lines.keySet()), rs -> {
+            CartItem line = lines.get(rs.getLong("id"));
+            BigDecimal current = unitPrice(rs.getBigDecimal("price"), rs.getBigDecimal("sale_price"));
+            if (line.getPrice().compareTo(current) != 0) {
+                priceChanges.add(new PriceChange(line.getProduct().getId(), rs.getString("name"),
+                        line.getPrice(), current));
+                line.setPrice(current);
+            }
+            // Hot products sell from the in-memory ledger; the ledger itself reports their shortages
+            int available = line.getHeldQuantity() + Math.max(rs.getInt("free"), 0);
+            if (!rs.getBoolean("hot_sku") && line.getQuantity() > available) {
+                shortages.add(new StockShortage(line.getProduct().getId(), rs.getString("name"),
+                        line.getQuantity(), available));
+            }
+        });
         recalculate(cart);
-        return cartRepository.save(cart);
+        return new Quote(priceChanges, shortages);
+    }
+
+    // Reserve stage of an asynchronous checkout, in its transaction: the ordered units leave the cart, which may
+    // have changed since the order was accepted, and the holds covering them go to the order
+    public Map<Long, Integer> checkOut(Long userId, Map<Long, Integer> quantities) {
+        Map<Long, Integer> held = cartStore.updateAndWriteIfPresent(userId, cart -> {
+            Map<Long, Integer> claimed = cartHoldService.claim(cart, quantities);
+            Map<Long, Integer> remaining = new HashMap<>(quantities);
+            for (CartItem item : cart.getItems()) {
+                Long productId = item.getProduct().getId();
+                int removed = Math.min(remaining.getOrDefault(productId, 0), item.getQuantity());
+                if (removed > 0) {
+                    item.setQuantity(item.getQuantity() - removed);
+                    remaining.merge(productId, -removed, Integer::sum);
+                }
+            }
+            cart.getItems().removeIf(item -> item.getQuantity() == 0);
+            cartHoldService.extend(cart);
+            recalculate(cart);
+            return claimed;
+        });
+        return held != null ? held : Map.of();
+    }
+
+    // After a checkout refused over changed prices, so the cart the shopper reloads shows what they will pay
+    public List<PriceChange> applyCurrentPrices(User user) {
+        return cartStore.update(user, cart -> quote(cart).priceChanges());
     }
 
-    private Cart getOrCreateCart(User user) {
-        return cartRepository.findByUser(user)
-                .orElseGet(() -> cartRepository.save(Cart.builder().user(user).build()));
+    private static BigDecimal unitPrice(BigDecimal price, BigDecimal salePrice) {
+        return salePrice != null && salePrice.signum() > 0 ? salePrice : price;
     }
 
     private void recalculate(Cart cart) {
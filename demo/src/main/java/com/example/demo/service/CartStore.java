@@ -0,0 +1,584 @@
+package com.example.demo.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.domain.Cart;
+import com.example.demo.domain.CartItem;
+import com.example.demo.domain.Product;
+import com.example.demo.domain.User;
+import com.example.demo.repository.CartRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Write-behind cache of active carts, keyed by user id: a mutation edits a copy that replaces the cart on commit,
+ * and dirty carts go to MySQL in batches every flush interval, except held-stock changes and checkout, which are
+ * written in the caller's transaction. Cart.version settles races with other nodes.
+ */
+@Slf4j
+@Service
+public class CartStore {
+
+    private static final String LOCK_CARTS =
+            "select user_id, id, version from carts where user_id in (:userIds) order by user_id for update";
+    private static final String UPDATE_CART = """
+            update carts set total_amount = ?, coupon_code = ?, discount_amount = ?, discounted_amount = ?,
+                hold_expires_at = ?, updated_at = ?, version = version + 1
+            where id = ?""";
+    private static final String INSERT_CART = """
+            insert into carts (total_amount, coupon_code, discount_amount, discounted_amount, hold_expires_at,
+                               updated_at, user_id, version)
+            values (?, ?, ?, ?, ?, ?, ?, 0)""";
+    private static final String INSERT_ITEM =
+            "insert into cart_items (cart_id, product_id, quantity, price, held_quantity) values (?, ?, ?, ?, ?)";
+
+    private final CartRepository cartRepository;
+    private final ProductCache productCache;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConflictRetry conflictRetry;
+    private final int batchSize;
+    private final long idleMillis;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final LongAdder conflicts = new LongAdder();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("cart-store-flusher").daemon(true).factory());
+
+    // Id and version of a cart's row after a write; applied to the cart only once that write has committed
+    private record Row(long id, long version) {
+
+        void applyTo(Cart cart) {
+            cart.setId(id);
+            cart.setVersion(version);
+        }
+    }
+
+    // Carts written (by identity) and carts left unwritten because their row changed since they were loaded
+    private record Written(Map<Cart, Row> rows, List<Cart> stale) {
+    }
+
+    private static final class Entry {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Cart cart;
+        private volatile long touchedAt = System.currentTimeMillis();
+        // Mutations installed since the cart was last written
+        private final List<Function<Cart, ?>> pending = new ArrayList<>();
+        private boolean dirty;
+        // The stored row moved on; pending is redone on it before the next change
+        private boolean stale;
+        private boolean evicted;
+
+        private Entry(Cart cart) {
+            this.cart = cart;
+        }
+    }
+
+    public CartStore(CartRepository cartRepository,
+                     ProductCache productCache,
+                     NamedParameterJdbcTemplate jdbcTemplate,
+                     PlatformTransactionManager transactionManager,
+                     ConflictRetry conflictRetry,
+                     @Value("${app.cart.store.flush-interval:1s}") Duration flushInterval,
+                     @Value("${app.cart.store.batch-size:500}") int batchSize,
+                     @Value("${app.cart.store.idle-timeout:30m}") Duration idleTimeout) {
+        this.cartRepository = cartRepository;
+        this.productCache = productCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.conflictRetry = conflictRetry;
+        this.batchSize = batchSize;
+        this.idleMillis = idleTimeout.toMillis();
+        long flushMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // The installed cart; callers must treat it as read-only and change it through update()
+    public Cart get(User user) {
+        Entry entry = entry(user.getId(), user);
+        entry.touchedAt = System.currentTimeMillis();
+        return entry.cart;
+    }
+
+    // Mutates a copy of the cart, installed on commit. The mutation may be redone later on a fresher cart, so one
+    // with side effects beyond the cart and held stock must use updateAndWrite.
+    public <T> T update(User user, Function<Cart, T> mutation) {
+        return update(user.getId(), user, mutation, false);
+    }
+
+    // Same, but the cart is written in the caller's transaction whatever changed (checkout)
+    public <T> T updateAndWrite(User user, Function<Cart, T> mutation) {
+        return update(user.getId(), user, mutation, true);
+    }
+
+    // For background jobs holding only a user id: users without a cart are skipped (null is returned)
+    public <T> T updateIfPresent(Long userId, Function<Cart, T> mutation) {
+        return update(userId, null, mutation, false);
+    }
+
+    // Background work that must commit with the caller's transaction (asynchronous checkout)
+    public <T> T updateAndWriteIfPresent(Long userId, Function<Cart, T> mutation) {
+        return update(userId, null, mutation, true);
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of("carts", entries.size(), "dirty", dirty.size(), "conflicts", conflicts.sum(),
+                "retry", conflictRetry.stats());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flush(true);
+    }
+
+    private <T> T update(Long userId, User user, Function<Cart, T> mutation, boolean writeThrough) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return conflictRetry.run(() -> update(userId, user, mutation, writeThrough));
+        }
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            changes = new Changes();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(changes);
+        }
+        Draft draft = changes.drafts.get(userId);
+        if (draft == null) {
+            Entry entry = lock(userId, user);
+            if (entry == null) {
+                return null;
+            }
+            try {
+                Cart base = entry.stale ? rebase(userId, entry) : entry.cart;
+                draft = new Draft(entry, copy(base));
+                T result = mutation.apply(draft.cart);
+                draft.mutations.add(mutation);
+                changes.drafts.put(userId, draft);
+                draft.writeThrough = writeThrough || entry.stale || heldChanged(base, draft.cart);
+                return result;
+            } catch (RuntimeException | Error ex) {
+                entry.lock.unlock();
+                throw ex;
+            }
+        }
+        T result = mutation.apply(draft.cart);
+        draft.mutations.add(mutation);
+        draft.writeThrough |= writeThrough || heldChanged(draft.entry.cart, draft.cart);
+        return result;
+    }
+
+    // Locked entry for the user, loading the cart on a miss; null when there is no cart and none may be created
+    private Entry lock(Long userId, User user) {
+        while (true) {
+            Entry entry = user != null ? entry(userId, user) : existingEntry(userId);
+            if (entry == null) {
+                return null;
+            }
+            entry.lock.lock();
+            if (!entry.evicted) {
+                entry.touchedAt = System.currentTimeMillis();
+                return entry;
+            }
+            entry.lock.unlock();
+        }
+    }
+
+    private Entry entry(Long userId, User user) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            return entry;
+        }
+        Cart cart = load(userId, user).orElseGet(() -> Cart.builder().user(user).build());
+        return entries.computeIfAbsent(userId, id -> new Entry(cart));
+    }
+
+    private Entry existingEntry(Long userId) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            return entry;
+        }
+        // One query for cart, lines and user; no separate user lookup per cart in background jobs
+        return cartRepository.findWithItemsAndUserByUserId(userId)
+                .map(stored -> entries.computeIfAbsent(userId, id -> new Entry(resolve(stored, stored.getUser()))))
+                .orElse(null);
+    }
+
+    private Optional<Cart> load(Long userId, User user) {
+        return cartRepository.findWithItemsByUserId(userId).map(stored -> resolve(stored, user));
+    }
+
+    // The stored cart with the pending mutations redone on it; one that no longer applies is dropped
+    private Cart rebase(Long userId, Entry entry) {
+        User user = entry.cart.getUser();
+        Cart cart = load(userId, user).orElseGet(() -> Cart.builder().user(user).build());
+        for (Iterator<Function<Cart, ?>> pending = entry.pending.iterator(); pending.hasNext(); ) {
+            Function<Cart, ?> mutation = pending.next();
+            try {
+                mutation.apply(cart);
+            } catch (RuntimeException ex) {
+                pending.remove();
+                log.warn("Cart change of user {} no longer applies after a write on another node; dropped", userId,
+                        ex);
+                throw new OptimisticLockingFailureException("Cart change dropped while redoing it", ex);
+            }
+        }
+        cart.setUpdatedAt(Instant.now());
+        return cart;
+    }
+
+    // Lines point at the shared fully loaded products of ProductCache rather than at lazy proxies
+    private Cart resolve(Cart stored, User user) {
+        Cart cart = copy(stored);
+        cart.setUser(user);
+        Map<Long, Product> products = productCache.getAll(cart.getItems().stream()
+                .map(item -> item.getProduct().getId())
+                .toList());
+        cart.getItems().removeIf(item -> !products.containsKey(item.getProduct().getId()));
+        cart.getItems().forEach(item -> item.setProduct(products.get(item.getProduct().getId())));
+        return cart;
+    }
+
+    private void install(Entry entry, Draft draft) {
+        draft.cart.setUpdatedAt(Instant.now());
+        entry.cart = draft.cart;
+        entry.touchedAt = System.currentTimeMillis();
+        entry.dirty = !draft.writeThrough;
+        if (entry.dirty) {
+            entry.pending.addAll(draft.mutations);
+            dirty.add(draft.cart.getUser().getId());
+        } else {
+            entry.pending.clear();
+            entry.stale = false;
+            dirty.remove(draft.cart.getUser().getId());
+        }
+    }
+
+    // Called with the entry's lock held; the next lock() finds it evicted and loads the stored cart
+    private void evict(Long userId, Entry entry) {
+        entry.evicted = true;
+        entry.dirty = false;
+        entry.pending.clear();
+        entries.remove(userId, entry);
+        dirty.remove(userId);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush(false);
+        } catch (RuntimeException ex) {
+            log.warn("Cart write-behind failed; will retry", ex);
+        }
+    }
+
+    // Entries busy in a request are left for the next round, unless everything must go out (shutdown)
+    private void flush(boolean all) {
+        List<Entry> batch = new ArrayList<>();
+        for (Long userId : dirty) {
+            Entry entry = entries.get(userId);
+            if (entry == null) {
+                dirty.remove(userId);
+                continue;
+            }
+            if (all) {
+                entry.lock.lock();
+            } else if (!entry.lock.tryLock()) {
+                continue;
+            }
+            if (!entry.dirty) {
+                dirty.remove(userId);
+                entry.lock.unlock();
+                continue;
+            }
+            batch.add(entry);
+            if (batch.size() == batchSize) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+        evictIdle();
+    }
+
+    // A batch that fails leaves every cart as it was, dirty, for the next round
+    private void writeBatch(List<Entry> batch) {
+        try {
+            Written written = transactionTemplate.execute(status ->
+                    write(batch.stream().map(entry -> entry.cart).toList()));
+            for (Entry entry : batch) {
+                Long userId = entry.cart.getUser().getId();
+                Row row = written.rows().get(entry.cart);
+                if (row == null) {
+                    replay(userId, entry);
+                } else {
+                    Cart cart = copy(entry.cart);
+                    row.applyTo(cart);
+                    written(userId, entry, cart);
+                }
+            }
+        } finally {
+            batch.forEach(entry -> entry.lock.unlock());
+        }
+    }
+
+    // Another node wrote the cart first: its pending mutations are redone on the fresh row; on failure it stays dirty
+    private void replay(Long userId, Entry entry) {
+        entry.stale = true;
+        try {
+            Written written = conflictRetry.run(() -> {
+                Written rebased = write(List.of(rebase(userId, entry)));
+                if (!rebased.stale().isEmpty()) {
+                    throw new OptimisticLockingFailureException("Cart was changed concurrently on another node");
+                }
+                return rebased;
+            });
+            written.rows().forEach((cart, row) -> {
+                row.applyTo(cart);
+                written(userId, entry, cart);
+            });
+        } catch (RuntimeException ex) {
+            log.warn("Could not redo changes of user {} on the cart written by another node; will retry", userId,
+                    ex);
+        }
+    }
+
+    private void written(Long userId, Entry entry, Cart cart) {
+        entry.cart = cart;
+        entry.dirty = false;
+        entry.stale = false;
+        entry.pending.clear();
+        dirty.remove(userId);
+    }
+
+    private void evictIdle() {
+        long idleSince = System.currentTimeMillis() - idleMillis;
+        entries.forEach((userId, entry) -> {
+            if (entry.touchedAt < idleSince && entry.lock.tryLock()) {
+                try {
+                    if (!entry.dirty && entry.touchedAt < idleSince) {
+                        entry.evicted = true;
+                        entries.remove(userId, entry);
+                    }
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        });
+    }
+
+    // A fixed number of statements per batch; the carts are not touched, their new ids and versions come back
+    private Written write(List<Cart> carts) {
+        Map<Long, long[]> stored = new HashMap<>();
+        jdbcTemplate.query(LOCK_CARTS,
+                new MapSqlParameterSource("userIds", carts.stream().map(cart -> cart.getUser().getId()).toList()),
+                rs -> {
+                    stored.put(rs.getLong(1), new long[] {rs.getLong(2), rs.getLong(3)});
+                });
+        Map<Cart, Long> ids = new IdentityHashMap<>();
+        List<Cart> updates = new ArrayList<>();
+        List<Cart> inserts = new ArrayList<>();
+        List<Cart> stale = new ArrayList<>();
+        for (Cart cart : carts) {
+            long[] row = stored.get(cart.getUser().getId());
+            if (row == null) {
+                inserts.add(cart);
+            } else if (cart.getVersion() != null && cart.getVersion() == row[1]) {
+                ids.put(cart, row[0]);
+                updates.add(cart);
+            } else {
+                stale.add(cart);
+            }
+        }
+        if (!stale.isEmpty()) {
+            conflicts.add(stale.size());
+        }
+
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        if (!updates.isEmpty()) {
+            jdbcTemplate.getJdbcTemplate().batchUpdate(UPDATE_CART, updates, updates.size(), (ps, cart) -> {
+                bind(ps, cart, utc);
+                ps.setLong(7, ids.get(cart));
+            });
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_CART, inserts, inserts.size(), (ps, cart) -> {
+                bind(ps, cart, utc);
+                ps.setLong(7, cart.getUser().getId());
+            });
+            Map<Long, Long> cartIds = new HashMap<>();
+            jdbcTemplate.query("select user_id, id from carts where user_id in (:userIds)",
+                    new MapSqlParameterSource("userIds", inserts.stream().map(cart -> cart.getUser().getId()).toList()),
+                    rs -> {
+                        cartIds.put(rs.getLong(1), rs.getLong(2));
+                    });
+            inserts.forEach(cart -> ids.put(cart, cartIds.get(cart.getUser().getId())));
+        }
+
+        Map<Cart, Row> rows = new IdentityHashMap<>();
+        updates.forEach(cart -> rows.put(cart, new Row(ids.get(cart), cart.getVersion() + 1)));
+        inserts.forEach(cart -> rows.put(cart, new Row(ids.get(cart), 0)));
+        if (rows.isEmpty()) {
+            return new Written(rows, stale);
+        }
+        jdbcTemplate.update("delete from cart_items where cart_id in (:ids)",
+                new MapSqlParameterSource("ids", List.copyOf(ids.values())));
+
+        List<Object[]> lines = new ArrayList<>();
+        rows.forEach((cart, row) -> {
+            for (CartItem item : cart.getItems()) {
+                lines.add(new Object[] {row.id(), item.getProduct().getId(), item.getQuantity(), item.getPrice(),
+                        item.getHeldQuantity()});
+            }
+        });
+        if (!lines.isEmpty()) {
+            jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_ITEM, lines);
+        }
+        return new Written(rows, stale);
+    }
+
+    private static void bind(PreparedStatement ps, Cart cart, Calendar utc) throws SQLException {
+        ps.setBigDecimal(1, cart.getTotalAmount());
+        ps.setString(2, cart.getCouponCode());
+        ps.setBigDecimal(3, cart.getDiscountAmount());
+        ps.setBigDecimal(4, cart.getDiscountedAmount());
+        if (cart.getHoldExpiresAt() != null) {
+            ps.setTimestamp(5, Timestamp.from(cart.getHoldExpiresAt()), utc);
+        } else {
+            ps.setNull(5, Types.TIMESTAMP);
+        }
+        ps.setTimestamp(6, Timestamp.from(Objects.requireNonNullElseGet(cart.getUpdatedAt(), Instant::now)), utc);
+    }
+
+    private static boolean heldChanged(Cart before, Cart after) {
+        return !held(before).equals(held(after));
+    }
+
+    private static Map<Long, Integer> held(Cart cart) {
+        Map<Long, Integer> held = new HashMap<>();
+        cart.getItems().forEach(item -> {
+            if (item.getHeldQuantity() > 0) {
+                held.merge(item.getProduct().getId(), item.getHeldQuantity(), Integer::sum);
+            }
+        });
+        return held;
+    }
+
+    private static Cart copy(Cart cart) {
+        return Cart.builder()
+                .id(cart.getId())
+                .user(cart.getUser())
+                .items(new ArrayList<>(cart.getItems().stream()
+                        .map(item -> CartItem.builder()
+                                .id(item.getId())
+                                .product(item.getProduct())
+                                .quantity(item.getQuantity())
+                                .price(item.getPrice())
+                                .heldQuantity(item.getHeldQuantity())
+                                .build())
+                        .toList()))
+                .totalAmount(cart.getTotalAmount())
+                .couponCode(cart.getCouponCode())
+                .discountAmount(cart.getDiscountAmount())
+                .discountedAmount(cart.getDiscountedAmount())
+                .holdExpiresAt(cart.getHoldExpiresAt())
+                .updatedAt(cart.getUpdatedAt())
+                .version(cart.getVersion())
+                .build();
+    }
+
+    private static final class Draft {
+        private final Entry entry;
+        private final Cart cart;
+        private final List<Function<Cart, ?>> mutations = new ArrayList<>();
+        private boolean writeThrough;
+        private boolean stale;
+
+        private Draft(Entry entry, Cart cart) {
+            this.entry = entry;
+            this.cart = cart;
+        }
+    }
+
+    // Everything one transaction changed: written-through carts go out as one batch before commit, and the
+    // user locks are held until the outcome is known
+    private final class Changes implements TransactionSynchronization {
+
+        private final Map<Long, Draft> drafts = new HashMap<>();
+        private Map<Cart, Row> rows = Map.of();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            List<Cart> carts = drafts.values().stream()
+                    .filter(draft -> draft.writeThrough)
+                    .map(draft -> draft.cart)
+                    .toList();
+            if (carts.isEmpty()) {
+                return;
+            }
+            Written written = write(carts);
+            if (!written.stale().isEmpty()) {
+                written.stale().forEach(cart -> drafts.get(cart.getUser().getId()).stale = true);
+                throw new OptimisticLockingFailureException("Cart was changed concurrently on another node");
+            }
+            rows = written.rows();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResource(CartStore.this);
+            drafts.forEach((userId, draft) -> {
+                if (status == STATUS_COMMITTED) {
+                    Row row = rows.get(draft.cart);
+                    if (row != null) {
+                        row.applyTo(draft.cart);
+                    }
+                    install(draft.entry, draft);
+                } else if (draft.stale) {
+                    if (draft.entry.pending.isEmpty()) {
+                        evict(userId, draft.entry);
+                    } else {
+                        draft.entry.stale = true;
+                    }
+                }
+                draft.entry.lock.unlock();
+            });
+        }
+    }
+}
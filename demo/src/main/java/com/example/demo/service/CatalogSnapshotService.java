@@ -0,0 +1,121 @@
+package com.example.demo.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.stereotype.Service;
+
+import com.example.demo.domain.Product;
+
+import lombok.RequiredArgsConstructor;
+import tools.jackson.databind.ObjectMapper;
+
+/*
+ * Serialized (plain and gzipped) bodies of the hottest anonymous GETs. Each key is materialized once on first
+ * request and concurrent requests for the same key wait for that single build. A product write drops the catalog
+ * first pages and the pages of its old and new category; a category write drops everything. A build that raced
+ * with a write still answers its waiters but is not kept.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogSnapshotService implements ProductIndex {
+
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Encoded>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final Map<Long, Long> categories = new ConcurrentHashMap<>();
+
+    public record Encoded(byte[] json, byte[] gzip) {
+    }
+
+    public static String productsKey(String sort) {
+        return "products:" + sort;
+    }
+
+    public static String categoryKey(Long categoryId, String sort) {
+        return "category:" + categoryId + ":" + sort;
+    }
+
+    public Encoded get(String key, Supplier<?> loader) {
+        CompletableFuture<Encoded> existing = entries.get(key);
+        if (existing == null) {
+            long startEpoch = epoch.get();
+            CompletableFuture<Encoded> created = new CompletableFuture<>();
+            existing = entries.putIfAbsent(key, created);
+            if (existing == null) {
+                try {
+                    created.complete(encode(loader.get()));
+                } catch (RuntimeException ex) {
+                    entries.remove(key, created);
+                    created.completeExceptionally(ex);
+                    throw ex;
+                }
+                if (epoch.get() != startEpoch) {
+                    entries.remove(key, created);
+                }
+                return created.join();
+            }
+        }
+        try {
+            return existing.join();
+        } catch (CompletionException ex) {
+            // The builder already rethrew its own failure; waiters see the same exception
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+    }
+
+    public void invalidate() {
+        epoch.incrementAndGet();
+        entries.clear();
+    }
+
+    @Override
+    public void index(Product product) {
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        Long previous = categoryId != null
+                ? categories.put(product.getId(), categoryId)
+                : categories.remove(product.getId());
+        invalidateProduct(previous, categoryId);
+    }
+
+    @Override
+    public void remove(Long productId) {
+        invalidateProduct(categories.remove(productId), null);
+    }
+
+    @Override
+    public void clear() {
+        categories.clear();
+        invalidate();
+    }
+
+    // Any product can move onto a catalog first page, but only its own categories' pages can change
+    private void invalidateProduct(Long previous, Long categoryId) {
+        String previousPrefix = previous != null ? categoryKey(previous, "") : null;
+        String categoryPrefix = categoryId != null ? categoryKey(categoryId, "") : null;
+        epoch.incrementAndGet();
+        entries.keySet().removeIf(key -> key.startsWith(productsKey(""))
+                || previousPrefix != null && key.startsWith(previousPrefix)
+                || categoryPrefix != null && key.startsWith(categoryPrefix));
+    }
+
+    private Encoded encode(Object value) {
+        byte[] json = objectMapper.writeValueAsBytes(value);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(json);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return new Encoded(json, compressed.toByteArray());
+    }
+}
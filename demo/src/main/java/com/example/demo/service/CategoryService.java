@@ -6,9 +6,11 @@ import org.springframework.stereotype.Service;
 
 import com.example.demo.domain.Category;
 import com.example.demo.dto.CategoryRequest;
+import com.example.demo.dto.ResourceVersion;
 import com.example.demo.exception.BadRequestException;
 import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.CollectionVersion;
 
 import lombok.RequiredArgsConstructor;
 
@@ -17,11 +19,22 @@ import lombok.RequiredArgsConstructor;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ImageStorageService imageStorageService;
+    private final CatalogSnapshotService catalogSnapshotService;
 
     public List<Category> getAll() {
         return categoryRepository.findAll();
     }
 
+    public CatalogSnapshotService.Encoded snapshot() {
+        return catalogSnapshotService.get("categories", this::getAll);
+    }
+
+    public ResourceVersion version() {
+        CollectionVersion version = categoryRepository.findVersion();
+        return ResourceVersion.of("c" + version.getCount(), version.getLastModified());
+    }
+
     public Category create(CategoryRequest request) {
         categoryRepository.findByNameIgnoreCase(request.getName()).ifPresent(c -> {
             throw new BadRequestException("Category name already exists");
@@ -29,9 +42,11 @@ public class CategoryService {
         Category category = Category.builder()
                 .name(request.getName())
                 .description(request.getDescription())
-                .image(request.getImage())
+                .image(imageStorageService.normalize(request.getImage()))
                 .build();
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        catalogSnapshotService.invalidate();
+        return saved;
     }
 
     public Category update(Long id, CategoryRequest request) {
@@ -40,14 +55,18 @@ public class CategoryService {
         category.setName(request.getName());
         category.setDescription(request.getDescription());
         if (request.getImage() != null) {
-            category.setImage(request.getImage());
+            category.setImage(imageStorageService.normalize(request.getImage()));
         }
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        // Product summaries embed the category name, so every snapshot goes
+        catalogSnapshotService.invalidate();
+        return saved;
     }
 
     public void delete(Long id) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Category not found"));
         categoryRepository.delete(category);
+        catalogSnapshotService.invalidate();
     }
 }
@@ -0,0 +1,317 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.domain.CheckoutStage;
+import com.example.demo.domain.Order;
+import com.example.demo.domain.Role;
+import com.example.demo.domain.User;
+import com.example.demo.dto.CheckoutStatus;
+import com.example.demo.dto.CreateOrderRequest;
+import com.example.demo.exception.ConflictException;
+import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.exception.ServiceBusyException;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Asynchronous checkout: the request thread accepts the order, then reserve, coupon, confirm and notify run as
+ * short transactions on a virtual thread, each stage admitting a bounded number of orders at a time.
+ */
+@Slf4j
+@Service
+public class CheckoutPipeline {
+
+    private static final String STATUS = "select user_id, checkout_stage, checkout_error from orders where id = :id";
+    private static final String STALLED = """
+            select id, user_id, checkout_stage from orders
+            where checkout_stage in ('ACCEPTED', 'RESERVED', 'COUPON_APPLIED')
+              and updated_at < utc_timestamp() - interval :staleSeconds second
+            order by id limit :limit""";
+
+    private record Stage(String name, CheckoutStage from, Semaphore permits, Predicate<Long> action) {
+    }
+
+    private record Tracked(Long userId, CheckoutStatus status) {
+    }
+
+    private final OrderService orderService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final List<Stage> stages;
+    private final Semaphore admission;
+    private final int maxInFlight;
+    private final long staleSeconds;
+    private final long retentionMillis;
+    private final long streamTimeoutMillis;
+
+    private final Map<Long, Tracked> statuses = new ConcurrentHashMap<>();
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Set<Long> checkingOut = ConcurrentHashMap.newKeySet();
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("checkout-", 0).factory());
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("checkout-sweeper").daemon(true).factory());
+
+    public CheckoutPipeline(OrderService orderService,
+                            NamedParameterJdbcTemplate jdbcTemplate,
+                            @Value("${app.checkout.max-in-flight:1000}") int maxInFlight,
+                            @Value("${app.checkout.stage-concurrency:3}") int stageConcurrency,
+                            @Value("${app.checkout.sweep-interval:1m}") Duration sweepInterval,
+                            @Value("${app.checkout.stale-after:2m}") Duration staleAfter,
+                            @Value("${app.checkout.status-retention:5m}") Duration retention,
+                            @Value("${app.checkout.stream-timeout:1m}") Duration streamTimeout) {
+        this.orderService = orderService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.stages = List.of(
+                new Stage("reserve", CheckoutStage.ACCEPTED, new Semaphore(stageConcurrency, true),
+                        orderService::reserveOrder),
+                new Stage("coupon", CheckoutStage.RESERVED, new Semaphore(stageConcurrency, true),
+                        orderService::applyOrderCoupon),
+                new Stage("confirm", CheckoutStage.COUPON_APPLIED, new Semaphore(stageConcurrency, true),
+                        orderService::confirmOrder));
+        this.admission = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.staleSeconds = staleAfter.toSeconds();
+        this.retentionMillis = retention.toMillis();
+        this.streamTimeoutMillis = streamTimeout.toMillis();
+        long sweepMillis = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Validate stage, on the request thread; the rest runs after this returns
+    public CheckoutStatus submit(User user, CreateOrderRequest request) {
+        if (!admission.tryAcquire()) {
+            throw new ServiceBusyException("Too many checkouts in progress, please retry shortly");
+        }
+        if (!checkingOut.add(user.getId())) {
+            admission.release();
+            throw new ConflictException("A checkout is already in progress");
+        }
+        Order order;
+        try {
+            order = orderService.acceptOrder(user, request);
+        } catch (RuntimeException ex) {
+            checkingOut.remove(user.getId());
+            admission.release();
+            throw ex;
+        }
+        CheckoutStatus status = new CheckoutStatus(order.getId(), CheckoutStage.ACCEPTED, null);
+        publish(user.getId(), status);
+        start(order.getId(), user.getId(), CheckoutStage.ACCEPTED, true);
+        return status;
+    }
+
+    public CheckoutStatus status(Long orderId, User user) {
+        Tracked tracked = statuses.get(orderId);
+        if (tracked == null) {
+            tracked = load(orderId);
+        }
+        if (!tracked.userId().equals(user.getId()) && user.getRole() != Role.ADMIN) {
+            throw new AccessDeniedException("Not your order");
+        }
+        return tracked.status();
+    }
+
+    // Sends the current stage, then every change until the order is CONFIRMED or FAILED
+    public SseEmitter stream(Long orderId, User user) {
+        CheckoutStatus current = status(orderId, user);
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        if (current.stage().isTerminal()) {
+            send(emitter, current);
+            emitter.complete();
+            return emitter;
+        }
+        List<SseEmitter> emitters = subscribers.computeIfAbsent(orderId, id -> new CopyOnWriteArrayList<>());
+        emitters.add(emitter);
+        Runnable unsubscribe = () -> {
+            emitters.remove(emitter);
+            if (emitters.isEmpty()) {
+                subscribers.remove(orderId, emitters);
+            }
+        };
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        CheckoutStatus latest = status(orderId, user);
+        send(emitter, latest);
+        if (latest.stage().isTerminal()) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of("inFlight", maxInFlight - admission.availablePermits(), "tracked", statuses.size());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        sweeper.shutdownNow();
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // Caller holds an admission permit (and the user's checkout slot, if submitted here); the worker gives them back
+    private void start(Long orderId, Long userId, CheckoutStage from, boolean submitted) {
+        running.add(orderId);
+        workers.execute(() -> {
+            try {
+                run(orderId, userId, from);
+            } finally {
+                running.remove(orderId);
+                if (submitted) {
+                    checkingOut.remove(userId);
+                }
+                admission.release();
+            }
+        });
+    }
+
+    private void run(Long orderId, Long userId, CheckoutStage from) {
+        boolean started = false;
+        for (Stage stage : stages) {
+            started |= stage.from() == from;
+            if (!started) {
+                continue;
+            }
+            try {
+                stage.permits().acquire();
+                boolean advanced;
+                try {
+                    advanced = stage.action().test(orderId);
+                } finally {
+                    stage.permits().release();
+                }
+                if (!advanced) {
+                    // Another worker moved it on or failed it; report what is stored and leave it to them
+                    publish(userId, load(orderId).status());
+                    return;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                fail(orderId, userId, stage, ex);
+                return;
+            }
+            CheckoutStage reached = next(stage.from());
+            if (!reached.isTerminal()) {
+                publish(userId, new CheckoutStatus(orderId, reached, null));
+            }
+        }
+        notifyConfirmed(orderId, userId);
+    }
+
+    // Notify stage: pollers and subscribers learn the order is placed
+    private void notifyConfirmed(Long orderId, Long userId) {
+        publish(userId, new CheckoutStatus(orderId, CheckoutStage.CONFIRMED, null));
+        log.info("Order {} of user {} confirmed", orderId, userId);
+    }
+
+    private void fail(Long orderId, Long userId, Stage stage, RuntimeException cause) {
+        String reason = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+        log.info("Checkout of order {} failed in the {} stage: {}", orderId, stage.name(), reason);
+        try {
+            orderService.failOrder(orderId, reason);
+            publish(userId, new CheckoutStatus(orderId, CheckoutStage.FAILED, reason));
+        } catch (RuntimeException ex) {
+            log.warn("Could not mark order {} failed", orderId, ex);
+        }
+    }
+
+    private void publish(Long userId, CheckoutStatus status) {
+        statuses.put(status.orderId(), new Tracked(userId, status));
+        List<SseEmitter> emitters = status.stage().isTerminal()
+                ? subscribers.remove(status.orderId())
+                : subscribers.get(status.orderId());
+        if (emitters != null) {
+            for (SseEmitter emitter : emitters) {
+                send(emitter, status);
+                if (status.stage().isTerminal()) {
+                    emitter.complete();
+                }
+            }
+        }
+        if (status.stage().isTerminal()) {
+            Tracked finished = statuses.get(status.orderId());
+            sweeper.schedule(() -> statuses.remove(status.orderId(), finished), retentionMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void send(SseEmitter emitter, CheckoutStatus status) {
+        try {
+            emitter.send(SseEmitter.event().name("checkout").data(status));
+        } catch (IOException | IllegalStateException ex) {
+            emitter.completeWithError(ex);
+        }
+    }
+
+    private Tracked load(Long orderId) {
+        List<Tracked> rows = jdbcTemplate.query(STATUS, new MapSqlParameterSource("id", orderId), (rs, rowNum) -> {
+            String stage = rs.getString("checkout_stage");
+            return new Tracked(rs.getLong("user_id"), new CheckoutStatus(orderId,
+                    stage != null ? CheckoutStage.valueOf(stage) : CheckoutStage.CONFIRMED,
+                    rs.getString("checkout_error")));
+        });
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Order not found");
+        }
+        return rows.get(0);
+    }
+
+    // Orders another run left behind; as many as there are free admission permits
+    private void sweep() {
+        int free = admission.availablePermits();
+        if (free == 0) {
+            return;
+        }
+        jdbcTemplate.query(STALLED, new MapSqlParameterSource()
+                .addValue("staleSeconds", staleSeconds)
+                .addValue("limit", free), rs -> {
+                    Long orderId = rs.getLong("id");
+                    if (!running.contains(orderId) && admission.tryAcquire()) {
+                        log.info("Resuming stalled checkout of order {}", orderId);
+                        start(orderId, rs.getLong("user_id"), CheckoutStage.valueOf(rs.getString("checkout_stage")),
+                                false);
+                    }
+                });
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException ex) {
+            log.warn("Checkout sweep failed; will retry next interval", ex);
+        }
+    }
+
+    private static CheckoutStage next(CheckoutStage stage) {
+        return switch (stage) {
+            case ACCEPTED -> CheckoutStage.RESERVED;
+            case RESERVED -> CheckoutStage.COUPON_APPLIED;
+            case COUPON_APPLIED -> CheckoutStage.CONFIRMED;
+            default -> stage;
+        };
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.domain.Product;
+
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * "Customers also bought": per product, a bounded list of the products most often ordered together with it,
+ * held as parallel primitive arrays sorted by count. The startup build counts exact co-occurrences over all
+ * non-cancelled orders, partitioned by source product so the fork/join workers never share a map. New orders
+ * update the lists with the space-saving rule: an unseen neighbor on a full list replaces the weakest entry
+ * and inherits its count + 1, which keeps frequent pairs and needs no unbounded counters.
+ */
+@Slf4j
+@Service
+public class CoPurchaseIndex implements ProductIndex {
+
+    private static final String BASKETS_QUERY = """
+            select oi.order_id, oi.product_id
+            from order_items oi
+            join orders o on o.id = oi.order_id
+            where o.order_status <> 'CANCELLED'
+            order by oi.order_id""";
+
+    // Pairs grow quadratically with basket size; huge wholesale orders say little about affinity
+    private static final int MAX_BASKET_SIZE = 50;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final int capacity;
+    private volatile ConcurrentHashMap<Long, Neighbors> neighbors = new ConcurrentHashMap<>();
+
+    // Immutable; updates swap in a new instance through ConcurrentHashMap.compute
+    private record Neighbors(long[] ids, int[] counts) {
+
+        private static Neighbors of(long id) {
+            return new Neighbors(new long[] {id}, new int[] {1});
+        }
+
+        private Neighbors increment(long id, int capacity) {
+            int index = indexOf(id);
+            long[] newIds;
+            int[] newCounts;
+            if (index >= 0) {
+                newIds = ids.clone();
+                newCounts = counts.clone();
+                newCounts[index]++;
+            } else if (ids.length < capacity) {
+                newIds = Arrays.copyOf(ids, ids.length + 1);
+                newCounts = Arrays.copyOf(counts, counts.length + 1);
+                index = ids.length;
+                newIds[index] = id;
+                newCounts[index] = 1;
+            } else {
+                newIds = ids.clone();
+                newCounts = counts.clone();
+                index = ids.length - 1;
+                newIds[index] = id;
+                newCounts[index]++;
+            }
+            // Restore descending order; only the touched entry can be out of place
+            while (index > 0 && newCounts[index] > newCounts[index - 1]) {
+                swap(newIds, newCounts, index, index - 1);
+                index--;
+            }
+            return new Neighbors(newIds, newCounts);
+        }
+
+        private int indexOf(long id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static void swap(long[] ids, int[] counts, int i, int j) {
+            long id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+            int count = counts[i];
+            counts[i] = counts[j];
+            counts[j] = count;
+        }
+    }
+
+    public CoPurchaseIndex(JdbcTemplate jdbcTemplate,
+                           @Value("${app.recommendations.neighbors:32}") int capacity) {
+        // Row-by-row streaming on Connector/J, see ExportService
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.capacity = capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public List<Long> related(Long productId, int limit) {
+        Neighbors entry = neighbors.get(productId);
+        if (entry == null) {
+            return List.of();
+        }
+        int count = Math.min(limit, entry.ids().length);
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(entry.ids()[i]);
+        }
+        return ids;
+    }
+
+    // Counted once the order commits, so rolled back checkouts never show up
+    public void recordOrder(Collection<Long> productIds) {
+        long[] basket = basketOf(productIds);
+        if (basket.length < 2) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            ConcurrentHashMap<Long, Neighbors> current = neighbors;
+            for (long source : basket) {
+                for (long target : basket) {
+                    if (source != target) {
+                        current.compute(source, (id, existing) ->
+                                existing == null ? Neighbors.of(target) : existing.increment(target, capacity));
+                    }
+                }
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        List<long[]> baskets = loadBaskets();
+        int partitions = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+        ConcurrentHashMap<Long, Neighbors> rebuilt = new ConcurrentHashMap<>();
+        IntStream.range(0, partitions).parallel().forEach(partition -> {
+            Map<Long, Map<Long, Integer>> counts = new HashMap<>();
+            for (long[] basket : baskets) {
+                for (long source : basket) {
+                    if (Math.floorMod(Long.hashCode(source), partitions) != partition) {
+                        continue;
+                    }
+                    Map<Long, Integer> row = counts.computeIfAbsent(source, id -> new HashMap<>());
+                    for (long target : basket) {
+                        if (source != target) {
+                            row.merge(target, 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+            counts.forEach((source, row) -> rebuilt.put(source, topNeighbors(row)));
+        });
+        neighbors = rebuilt;
+        log.info("Built co-purchase lists for {} products from {} orders in {} ms",
+                rebuilt.size(), baskets.size(), System.currentTimeMillis() - started);
+    }
+
+    @Override
+    public void index(Product product) {
+        // Catalog edits don't change purchase history
+    }
+
+    @Override
+    public void remove(Long productId) {
+        neighbors.remove(productId);
+    }
+
+    @Override
+    public void clear() {
+        // Rebuilt from orders, not from the product scan
+    }
+
+    private List<long[]> loadBaskets() {
+        List<long[]> baskets = new ArrayList<>();
+        Set<Long> basket = new LinkedHashSet<>();
+        long[] currentOrder = {-1};
+        streamingJdbcTemplate.query(BASKETS_QUERY, rs -> {
+            long orderId = rs.getLong(1);
+            if (orderId != currentOrder[0]) {
+                addBasket(baskets, basket);
+                currentOrder[0] = orderId;
+            }
+            basket.add(rs.getLong(2));
+        });
+        addBasket(baskets, basket);
+        return baskets;
+    }
+
+    private void addBasket(List<long[]> baskets, Set<Long> basket) {
+        long[] ids = basketOf(basket);
+        if (ids.length >= 2) {
+            baskets.add(ids);
+        }
+        basket.clear();
+    }
+
+    private long[] basketOf(Collection<Long> productIds) {
+        return productIds.stream()
+                .distinct()
+                .limit(MAX_BASKET_SIZE)
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private Neighbors topNeighbors(Map<Long, Integer> row) {
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(row.entrySet());
+        entries.sort(Map.Entry.<Long, Integer>comparingByValue().reversed());
+        int size = Math.min(capacity, entries.size());
+        long[] ids = new long[size];
+        int[] counts = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = entries.get(i).getKey();
+            counts[i] = entries.get(i).getValue();
+        }
+        return new Neighbors(ids, counts);
+    }
+}
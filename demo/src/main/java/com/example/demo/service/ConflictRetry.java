@@ -0,0 +1,73 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/*
+ * Re-runs a unit of work in a fresh transaction when it loses an optimistic-locking race, i.e. another node wrote
+ * the same cart since it was loaded. Attempts are bounded. Between attempts the caller sleeps a random time below
+ * an exponentially growing cap ("full jitter"), so writers that collided spread out instead of meeting again in
+ * lockstep. Work started inside an existing transaction runs as is: only the outermost transaction can be redone.
+ */
+@Service
+public class ConflictRetry {
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public ConflictRetry(PlatformTransactionManager transactionManager,
+                         @Value("${app.cart.retry.max-attempts:5}") int maxAttempts,
+                         @Value("${app.cart.retry.backoff:10ms}") Duration backoff,
+                         @Value("${app.cart.retry.max-backoff:200ms}") Duration maxBackoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+    }
+
+    public <T> T run(Supplier<T> work) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            return work.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException ex) {
+                if (attempt == maxAttempts) {
+                    exhausted.increment();
+                    throw ex;
+                }
+                retries.increment();
+                backOff(attempt, ex);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of("retries", retries.sum(), "exhausted", exhausted.sum());
+    }
+
+    private void backOff(int attempt, OptimisticLockingFailureException conflict) {
+        long cap = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+}
@@ -56,15 +56,28 @@ public class CouponService {
         if (code == null || code.isBlank()) {
             return BigDecimal.ZERO;
         }
+        Coupon coupon = findValid(code, subtotal);
+        BigDecimal discount = coupon.calculateDiscount(subtotal);
+        coupon.setUsageCount(coupon.getUsageCount() + 1);
+        couponRepository.save(coupon);
+        return discount;
+    }
+
+    // Asynchronous checkout refuses a bad coupon up front; usage is only counted once stock is reserved
+    @Transactional(readOnly = true)
+    public void validateCouponIfPresent(String code, BigDecimal subtotal) {
+        if (code != null && !code.isBlank()) {
+            findValid(code, subtotal);
+        }
+    }
+
+    private Coupon findValid(String code, BigDecimal subtotal) {
         Coupon coupon = couponRepository.findByCodeIgnoreCase(code)
                 .orElseThrow(() -> new BadRequestException("Invalid coupon"));
         if (!coupon.isValid(subtotal)) {
             throw new BadRequestException("Coupon is not valid for this order");
         }
-        BigDecimal discount = coupon.calculateDiscount(subtotal);
-        coupon.setUsageCount(coupon.getUsageCount() + 1);
-        couponRepository.save(coupon);
-        return discount;
+        return coupon;
     }
 
     private void attachRelations(Coupon coupon, Set<Long> categoryIds, Set<Long> productIds) {
@@ -0,0 +1,65 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streaming RFC 4180 reader: quoted fields may contain commas, doubled quotes and line breaks
+final class CsvReader {
+
+    private final PushbackReader reader;
+
+    CsvReader(Reader reader) {
+        this.reader = new PushbackReader(reader, 1);
+    }
+
+    // Next record, or null at end of input; a blank line comes back as a single empty field
+    List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean consumed = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            consumed = true;
+            if (quoted) {
+                if (c != '"') {
+                    field.append((char) c);
+                } else if (peek() == '"') {
+                    field.append((char) reader.read());
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c == '\r') {
+                if (peek() == '\n') {
+                    reader.read();
+                }
+                break;
+            } else {
+                field.append((char) c);
+            }
+        }
+        if (!consumed) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private int peek() throws IOException {
+        int c = reader.read();
+        if (c != -1) {
+            reader.unread(c);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+// Counterpart of CsvReader: quotes a field only when it holds a comma, quote or line break
+final class CsvWriter {
+
+    private CsvWriter() {
+    }
+
+    static void writeRow(Writer out, List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            Object value = values.get(i);
+            if (value != null) {
+                writeField(out, value.toString());
+            }
+        }
+        out.write("\r\n");
+    }
+
+    private static void writeField(Writer out, String field) throws IOException {
+        boolean quote = field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0;
+        if (!quote) {
+            out.write(field);
+            return;
+        }
+        out.write('"');
+        out.write(field.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
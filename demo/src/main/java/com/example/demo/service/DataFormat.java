@@ -0,0 +1,49 @@
+package com.example.demo.service;
+
+import java.util.Locale;
+
+import com.example.demo.exception.BadRequestException;
+
+// Record formats shared by bulk import and export
+public enum DataFormat {
+    CSV("text/csv", "csv"),
+    JSONL("application/x-ndjson", "jsonl");
+
+    private final String contentType;
+    private final String extension;
+
+    DataFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String contentType(boolean gzip) {
+        return gzip ? "application/gzip" : contentType + ";charset=UTF-8";
+    }
+
+    public String fileName(String baseName, boolean gzip) {
+        return baseName + "." + extension + (gzip ? ".gz" : "");
+    }
+
+    public static DataFormat from(String name) {
+        if (name == null || name.isBlank()) {
+            return CSV;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Unsupported format: " + name);
+        }
+    }
+
+    public static DataFormat fromContentType(String contentType) {
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+        if (type.startsWith("text/csv")) {
+            return CSV;
+        }
+        if (type.startsWith("application/x-ndjson") || type.startsWith("application/jsonl")) {
+            return JSONL;
+        }
+        throw new BadRequestException("Expected text/csv or application/x-ndjson");
+    }
+}
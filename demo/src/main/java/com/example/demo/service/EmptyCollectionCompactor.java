@@ -0,0 +1,104 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Reads no longer create carts or wishlists, but rows created before that, and carts emptied by checkout or
+ * clear, stay behind. This job walks both tables in id order and deletes empty rows untouched for min-age,
+ * one batch per statement pair, each statement its own short transaction. The delete re-checks emptiness, so a
+ * row that gained lines after it was selected survives; a cart still live in CartStore is simply re-inserted by
+ * its next write.
+ */
+@Slf4j
+@Service
+public class EmptyCollectionCompactor {
+
+    private static final String EMPTY_CARTS = """
+            select c.id from carts c
+            where c.id > :after and c.coupon_code is null and c.hold_expires_at is null
+              and c.updated_at < utc_timestamp() - interval :minAge second
+              and not exists (select 1 from cart_items i where i.cart_id = c.id)
+            order by c.id limit :limit""";
+    private static final String DELETE_CARTS = """
+            delete from carts
+            where id in (:ids) and hold_expires_at is null
+              and not exists (select 1 from cart_items i where i.cart_id = carts.id)""";
+    private static final String EMPTY_WISHLISTS = """
+            select w.id from wishlists w
+            where w.id > :after
+              and (w.updated_at is null or w.updated_at < utc_timestamp() - interval :minAge second)
+              and not exists (select 1 from wishlist_products p where p.wishlist_id = w.id)
+            order by w.id limit :limit""";
+    private static final String DELETE_WISHLISTS = """
+            delete from wishlists
+            where id in (:ids)
+              and not exists (select 1 from wishlist_products p where p.wishlist_id = wishlists.id)""";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final long minAgeSeconds;
+    private final int batchSize;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("empty-collection-compactor").daemon(true).factory());
+
+    public EmptyCollectionCompactor(NamedParameterJdbcTemplate jdbcTemplate,
+                                    @Value("${app.compaction.interval:1h}") Duration interval,
+                                    @Value("${app.compaction.min-age:1d}") Duration minAge,
+                                    @Value("${app.compaction.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.minAgeSeconds = minAge.toSeconds();
+        this.batchSize = batchSize;
+        executor.scheduleWithFixedDelay(this::compactQuietly, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void compact() {
+        long started = System.currentTimeMillis();
+        int carts = compact(EMPTY_CARTS, DELETE_CARTS);
+        int wishlists = compact(EMPTY_WISHLISTS, DELETE_WISHLISTS);
+        if (carts > 0 || wishlists > 0) {
+            log.info("Removed {} empty carts and {} empty wishlists in {} ms",
+                    carts, wishlists, System.currentTimeMillis() - started);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private int compact(String select, String delete) {
+        int removed = 0;
+        long after = 0;
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(select, new MapSqlParameterSource()
+                    .addValue("after", after)
+                    .addValue("minAge", minAgeSeconds)
+                    .addValue("limit", batchSize), Long.class);
+            if (ids.isEmpty()) {
+                return removed;
+            }
+            removed += jdbcTemplate.update(delete, new MapSqlParameterSource("ids", ids));
+            after = ids.get(ids.size() - 1);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException ex) {
+            log.warn("Empty cart/wishlist compaction failed; will retry next interval", ex);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.demo.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.databind.ObjectMapper;
+
+/*
+ * Full product and order dumps. Rows come off a forward-only JDBC result set and are written out as they
+ * arrive, so memory stays flat however large the tables grow. Child rows (images, order lines) are joined
+ * in and folded back into their parent while the parent id stays the same.
+ */
+@Slf4j
+@Service
+public class ExportService {
+
+    private static final String PRODUCTS_QUERY = """
+            select p.id, p.name, p.description, p.price, p.sale_price, p.category_id, c.name as category_name,
+                   p.stock, p.rating_average, p.rating_count, p.specifications, p.created_at, p.updated_at,
+                   pi.image
+            from products p
+            join categories c on c.id = p.category_id
+            left join product_images pi on pi.product_id = p.id
+            order by p.id""";
+
+    private static final String ORDERS_QUERY = """
+            select o.id, o.created_at, o.user_id, u.email, o.order_status, o.payment_status, o.payment_method,
+                   o.street, o.city, o.state, o.zip_code, o.country,
+                   o.total_amount, o.shipping_fee, o.tax, o.discount_amount, o.coupon_code, o.grand_total,
+                   oi.product_id, p.name as product_name, oi.quantity, oi.price
+            from orders o
+            join users u on u.id = o.user_id
+            left join order_items oi on oi.order_id = o.id
+            left join products p on p.id = oi.product_id
+            order by o.id, oi.id""";
+
+    private static final List<String> PRODUCT_COLUMNS = List.of("id", "name", "description", "price", "salePrice",
+            "categoryId", "category", "stock", "ratingAverage", "ratingCount", "specifications", "images",
+            "createdAt", "updatedAt");
+
+    private static final List<String> ORDER_COLUMNS = List.of("orderId", "createdAt", "userId", "userEmail",
+            "orderStatus", "paymentStatus", "paymentMethod", "street", "city", "state", "zipCode", "country",
+            "totalAmount", "shippingFee", "tax", "discountAmount", "couponCode", "grandTotal");
+
+    private static final List<String> ORDER_ITEM_COLUMNS = List.of("productId", "productName", "quantity", "unitPrice");
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    public ExportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         ObjectMapper objectMapper) {
+        // Connector/J streams row by row only for Integer.MIN_VALUE; any other fetch size buffers the whole result
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.transactionManager = transactionManager;
+        this.objectMapper = objectMapper;
+    }
+
+    private interface RecordWriter {
+        void write(Writer out) throws IOException;
+    }
+
+    public StreamingResponseBody products(DataFormat format, boolean gzip) {
+        return output -> stream(output, gzip, out -> writeProducts(out, format));
+    }
+
+    public StreamingResponseBody orders(DataFormat format, boolean gzip) {
+        return output -> stream(output, gzip, out -> writeOrders(out, format));
+    }
+
+    private void stream(OutputStream output, boolean gzip, RecordWriter recordWriter) throws IOException {
+        long started = System.currentTimeMillis();
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(output, 8192) : null;
+        Writer out = new BufferedWriter(new OutputStreamWriter(gzip ? compressed : output, StandardCharsets.UTF_8), 16384);
+        try {
+            recordWriter.write(out);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        out.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        log.info("Export finished in {} ms", System.currentTimeMillis() - started);
+    }
+
+    private void writeProducts(Writer out, DataFormat format) throws IOException {
+        if (format == DataFormat.CSV) {
+            CsvWriter.writeRow(out, PRODUCT_COLUMNS);
+        }
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        Map<String, Object> current = new LinkedHashMap<>();
+        List<String> images = new ArrayList<>();
+        query(PRODUCTS_QUERY, rs -> {
+            long id = rs.getLong("id");
+            if (!current.isEmpty() && !current.get("id").equals(id)) {
+                emitProduct(out, format, current, images);
+            }
+            if (current.isEmpty()) {
+                current.put("id", id);
+                current.put("name", rs.getString("name"));
+                current.put("description", rs.getString("description"));
+                current.put("price", rs.getBigDecimal("price"));
+                current.put("salePrice", rs.getBigDecimal("sale_price"));
+                current.put("categoryId", rs.getLong("category_id"));
+                current.put("category", rs.getString("category_name"));
+                current.put("stock", rs.getObject("stock"));
+                current.put("ratingAverage", rs.getObject("rating_average"));
+                current.put("ratingCount", rs.getObject("rating_count"));
+                current.put("specifications", rs.getString("specifications"));
+                current.put("images", images);
+                current.put("createdAt", instant(rs.getTimestamp("created_at", utc)));
+                current.put("updatedAt", instant(rs.getTimestamp("updated_at", utc)));
+            }
+            String image = rs.getString("image");
+            if (image != null) {
+                images.add(image);
+            }
+        });
+        if (!current.isEmpty()) {
+            emitProduct(out, format, current, images);
+        }
+    }
+
+    private void emitProduct(Writer out, DataFormat format, Map<String, Object> product, List<String> images) {
+        if (format == DataFormat.CSV) {
+            writeCsv(out, product.values().stream()
+                    .map(value -> value == images ? String.join("|", images) : value)
+                    .toList());
+        } else {
+            writeJson(out, product);
+        }
+        product.clear();
+        images.clear();
+    }
+
+    // CSV: one row per order line with the order columns repeated; JSONL: one object per order with its items
+    private void writeOrders(Writer out, DataFormat format) throws IOException {
+        if (format == DataFormat.CSV) {
+            List<String> header = new ArrayList<>(ORDER_COLUMNS);
+            header.addAll(ORDER_ITEM_COLUMNS);
+            CsvWriter.writeRow(out, header);
+        }
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        Map<String, Object> current = new LinkedHashMap<>();
+        List<Map<String, Object>> items = new ArrayList<>();
+        query(ORDERS_QUERY, rs -> {
+            long id = rs.getLong("id");
+            if (!current.isEmpty() && !current.get("orderId").equals(id)) {
+                emitOrder(out, format, current, items);
+            }
+            if (current.isEmpty()) {
+                current.put("orderId", id);
+                current.put("createdAt", instant(rs.getTimestamp("created_at", utc)));
+                current.put("userId", rs.getLong("user_id"));
+                current.put("userEmail", rs.getString("email"));
+                current.put("orderStatus", rs.getString("order_status"));
+                current.put("paymentStatus", rs.getString("payment_status"));
+                current.put("paymentMethod", rs.getString("payment_method"));
+                current.put("street", rs.getString("street"));
+                current.put("city", rs.getString("city"));
+                current.put("state", rs.getString("state"));
+                current.put("zipCode", rs.getString("zip_code"));
+                current.put("country", rs.getString("country"));
+                current.put("totalAmount", rs.getBigDecimal("total_amount"));
+                current.put("shippingFee", rs.getBigDecimal("shipping_fee"));
+                current.put("tax", rs.getBigDecimal("tax"));
+                current.put("discountAmount", rs.getBigDecimal("discount_amount"));
+                current.put("couponCode", rs.getString("coupon_code"));
+                current.put("grandTotal", rs.getBigDecimal("grand_total"));
+            }
+            if (rs.getObject("product_id") != null) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("productId", rs.getLong("product_id"));
+                item.put("productName", rs.getString("product_name"));
+                item.put("quantity", rs.getInt("quantity"));
+                item.put("unitPrice", rs.getBigDecimal("price"));
+                items.add(item);
+            }
+        });
+        if (!current.isEmpty()) {
+            emitOrder(out, format, current, items);
+        }
+    }
+
+    private void emitOrder(Writer out, DataFormat format, Map<String, Object> order, List<Map<String, Object>> items) {
+        if (format == DataFormat.CSV) {
+            List<Object> orderValues = new ArrayList<>(order.values());
+            if (items.isEmpty()) {
+                writeCsv(out, orderValues);
+            }
+            for (Map<String, Object> item : items) {
+                List<Object> row = new ArrayList<>(orderValues);
+                row.addAll(item.values());
+                writeCsv(out, row);
+            }
+        } else {
+            order.put("items", items);
+            writeJson(out, order);
+        }
+        order.clear();
+        items.clear();
+    }
+
+    private interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    // One read-only transaction gives the whole dump a consistent snapshot
+    private void query(String sql, RowHandler handler) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        tx.executeWithoutResult(status -> streamingJdbcTemplate.query(sql, handler::handle));
+    }
+
+    private void writeCsv(Writer out, List<?> values) {
+        try {
+            CsvWriter.writeRow(out, values);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeJson(Writer out, Map<String, Object> record) {
+        try {
+            out.write(objectMapper.writeValueAsString(record));
+            out.write('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private String instant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant().toString() : null;
+    }
+}
@@ -0,0 +1,437 @@
+package com.example.demo.service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.domain.Product;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Flash-sale stock for hotSku products: units are leased from the database in chunks and sold from striped
+ * in-memory counters, with each sale journaled to disk before commit and written back every flush interval.
+ */
+@Slf4j
+@Service
+public class HotStockLedger implements ProductIndex {
+
+    // 16 ints = 64 bytes between live cells, so stripes never share a cache line
+    private static final int PADDING = 16;
+
+    private static final String LEASE_SELECT =
+            "select stock - leased_stock - held_stock from products where id = :id for update";
+    private static final String LEASE = "update products set leased_stock = leased_stock + :quantity where id = :id";
+    private static final String UNLEASE = "update products set leased_stock = leased_stock - :quantity where id = :id";
+    private static final String SETTLE =
+            """
+            update products set stock = stock - :quantity, leased_stock = leased_stock - :quantity,
+                                updated_at = utc_timestamp(6)
+            where id = :id""";
+    private static final String NODE_LEASE = """
+            insert into hot_stock_leases (node_id, product_id, quantity) values (:node, :id, :quantity)
+            on duplicate key update quantity = quantity + :quantity""";
+    private static final String NODE_UNLEASE = """
+            update hot_stock_leases set quantity = quantity - :quantity
+            where node_id = :node and product_id = :id""";
+    private static final String RETURN_NODE_LEASES = """
+            update products p join hot_stock_leases l on l.product_id = p.id
+            set p.leased_stock = p.leased_stock - l.quantity
+            where l.node_id = :node and l.quantity <> 0""";
+    private static final String DELETE_NODE_LEASES = "delete from hot_stock_leases where node_id = :node";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // Looked up lazily: ProductIndexer collects every ProductIndex, this ledger included
+    private final ObjectProvider<ProductIndexer> productIndexer;
+    private final ProductCache productCache;
+    private final StockJournal journal;
+    private final String nodeId;
+    private final int chunkSize;
+    private final int stripes;
+    private final long flushIntervalMillis;
+
+    private final Map<Long, Sku> skus = new ConcurrentHashMap<>();
+    private final Queue<Sale> sales = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("hot-stock-ledger").daemon(true).factory());
+
+    public record Reservation(Map<Long, Integer> fromLedger, Map<Long, Integer> remainder) {
+    }
+
+    private record Sale(long orderId, long segment, Map<Long, Integer> quantities) {
+    }
+
+    public HotStockLedger(NamedParameterJdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          ObjectProvider<ProductIndexer> productIndexer,
+                          ProductCache productCache,
+                          @Value("${app.inventory.hot.chunk-size:100}") int chunkSize,
+                          @Value("${app.inventory.hot.stripes:16}") int stripes,
+                          @Value("${app.inventory.hot.flush-interval:1s}") Duration flushInterval,
+                          @Value("${app.inventory.hot.journal-dir:./data/stock-journal}") String journalDir,
+                          @Value("${app.inventory.hot.node-id:}") String nodeId) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.productIndexer = productIndexer;
+        this.productCache = productCache;
+        this.journal = new StockJournal(Path.of(journalDir));
+        this.nodeId = nodeId.isBlank() ? journal.nodeId() : nodeId;
+        this.chunkSize = chunkSize;
+        this.stripes = stripes;
+        this.flushIntervalMillis = flushInterval.toMillis();
+    }
+
+    // Before any product is enrolled: settle what the previous run left behind, then start a fresh journal
+    @PostConstruct
+    public void recover() {
+        List<StockJournal.Entry> entries = journal.recover();
+        Map<Long, Integer> sold = new HashMap<>();
+        Set<Long> orderIds = new HashSet<>();
+        if (!entries.isEmpty()) {
+            Set<Long> pending = new HashSet<>(jdbcTemplate.queryForList(
+                    "select id from orders where id in (:ids) and hot_stock_pending = true",
+                    new MapSqlParameterSource("ids", entries.stream().map(StockJournal.Entry::orderId).distinct().toList()),
+                    Long.class));
+            for (StockJournal.Entry entry : entries) {
+                if (pending.contains(entry.orderId())) {
+                    sold.merge(entry.productId(), entry.quantity(), Integer::sum);
+                    orderIds.add(entry.orderId());
+                }
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            settle(sold, orderIds);
+            MapSqlParameterSource node = new MapSqlParameterSource("node", nodeId);
+            int returned = jdbcTemplate.update(RETURN_NODE_LEASES, node);
+            jdbcTemplate.update(DELETE_NODE_LEASES, node);
+            if (returned > 0) {
+                log.info("Returned unsold hot-SKU leases of node {} for {} products", nodeId, returned);
+            }
+        });
+        journal.reset();
+        if (!sold.isEmpty()) {
+            log.info("Recovered {} unflushed hot-SKU orders across {} products", orderIds.size(), sold.size());
+        }
+        executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    // Takes what the ledger holds for each hot product; the remainder goes through InventoryService's row update
+    public Reservation reserve(long orderId, Map<Long, Integer> quantities) {
+        Map<Long, Integer> fromLedger = new HashMap<>();
+        Map<Long, Integer> remainder = new HashMap<>();
+        quantities.forEach((productId, quantity) -> {
+            Sku sku = skus.get(productId);
+            int taken = sku != null ? sku.take(quantity) : 0;
+            if (taken > 0) {
+                fromLedger.put(productId, taken);
+            }
+            if (taken < quantity) {
+                remainder.put(productId, quantity - taken);
+            }
+            if (sku != null) {
+                sku.refillIfLow();
+            }
+        });
+        if (!fromLedger.isEmpty()) {
+            TransactionSynchronizationManager.registerSynchronization(new LedgerLines(orderId, fromLedger));
+        }
+        return new Reservation(fromLedger, remainder);
+    }
+
+    // Writes back unflushed sales and returns the unsold lease, e.g. before an admin overwrites stock
+    public void settle(Long productId) {
+        Sku sku = skus.remove(productId);
+        if (sku != null) {
+            retire(sku);
+        }
+        flush();
+    }
+
+    @Override
+    public void index(Product product) {
+        if (Boolean.TRUE.equals(product.getHotSku())) {
+            skus.computeIfAbsent(product.getId(), Sku::new).refillIfLow();
+        } else {
+            remove(product.getId());
+        }
+    }
+
+    @Override
+    public void remove(Long productId) {
+        Sku sku = skus.remove(productId);
+        if (sku != null) {
+            executor.execute(() -> retire(sku));
+        }
+    }
+
+    @Override
+    public void clear() {
+        // Leases outlive index rebuilds; hot products are re-announced through index()
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        skus.forEach((productId, sku) -> stats.put(String.valueOf(productId), sku.available()));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        List<Sku> remaining = new ArrayList<>(skus.values());
+        skus.clear();
+        remaining.forEach(this::retire);
+        flush();
+        journal.close();
+    }
+
+    private synchronized void flush() {
+        List<Sale> batch = new ArrayList<>();
+        for (Sale sale; (sale = sales.poll()) != null; ) {
+            batch.add(sale);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> sold = new HashMap<>();
+        Set<Long> orderIds = new HashSet<>();
+        for (Sale sale : batch) {
+            sale.quantities().forEach((productId, quantity) -> sold.merge(productId, quantity, Integer::sum));
+            orderIds.add(sale.orderId());
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> settle(sold, orderIds));
+        } catch (RuntimeException ex) {
+            sales.addAll(batch);
+            throw ex;
+        }
+        batch.forEach(sale -> journal.release(sale.segment()));
+        journal.rotate();
+        // Listings only change once a product sells out
+        sold.keySet().forEach(productCache::invalidate);
+        List<Long> soldOut = jdbcTemplate.queryForList("select id from products where id in (:ids) and stock <= 0",
+                new MapSqlParameterSource("ids", sold.keySet()), Long.class);
+        if (!soldOut.isEmpty()) {
+            productIndexer.getObject().reindex(soldOut);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.warn("Hot-SKU stock write-back failed; will retry", ex);
+        }
+    }
+
+    private void settle(Map<Long, Integer> sold, Collection<Long> orderIds) {
+        if (sold.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource[] parameters = sold.entrySet().stream()
+                .map(entry -> leaseParameters(entry.getKey(), entry.getValue()))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(SETTLE, parameters);
+        jdbcTemplate.batchUpdate(NODE_UNLEASE, parameters);
+        jdbcTemplate.update("update orders set hot_stock_pending = false where id in (:ids)",
+                new MapSqlParameterSource("ids", orderIds));
+    }
+
+    private int lease(long productId) {
+        Integer leased = transactionTemplate.execute(status -> {
+            List<Integer> free = jdbcTemplate.queryForList(LEASE_SELECT,
+                    new MapSqlParameterSource("id", productId), Integer.class);
+            int quantity = free.isEmpty() ? 0 : Math.min(chunkSize, free.get(0));
+            if (quantity > 0) {
+                MapSqlParameterSource parameters = leaseParameters(productId, quantity);
+                jdbcTemplate.update(LEASE, parameters);
+                jdbcTemplate.update(NODE_LEASE, parameters);
+            }
+            return quantity;
+        });
+        return leased != null ? leased : 0;
+    }
+
+    private void unlease(long productId, int quantity) {
+        if (quantity > 0) {
+            MapSqlParameterSource parameters = leaseParameters(productId, quantity);
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(UNLEASE, parameters);
+                jdbcTemplate.update(NODE_UNLEASE, parameters);
+            });
+        }
+    }
+
+    private MapSqlParameterSource leaseParameters(long productId, int quantity) {
+        return new MapSqlParameterSource()
+                .addValue("node", nodeId)
+                .addValue("id", productId)
+                .addValue("quantity", quantity);
+    }
+
+    private void retire(Sku sku) {
+        sku.retired = true;
+        unlease(sku.productId, sku.drain());
+    }
+
+    // Units from a rolled-back checkout or a refill; a retired SKU hands them straight back to the database
+    private void deposit(Sku sku, int quantity) {
+        sku.add(quantity);
+        if (sku.retired) {
+            int unsold = sku.drain();
+            if (unsold > 0) {
+                executor.execute(() -> unlease(sku.productId, unsold));
+            }
+        }
+    }
+
+    private final class Sku {
+
+        private final long productId;
+        private final AtomicIntegerArray cells = new AtomicIntegerArray(stripes * PADDING);
+        private final AtomicBoolean refilling = new AtomicBoolean();
+        // Set when the database had nothing left to lease; restocks are picked up after the next flush interval
+        private volatile long emptyUntil;
+        private volatile boolean retired;
+
+        private Sku(long productId) {
+            this.productId = productId;
+        }
+
+        // Starts at the caller's own stripe and steals from the others; may return less than asked
+        int take(int quantity) {
+            int taken = 0;
+            int home = home();
+            for (int i = 0; i < stripes && taken < quantity; i++) {
+                int cell = ((home + i) % stripes) * PADDING;
+                int current;
+                while (taken < quantity && (current = cells.get(cell)) > 0) {
+                    int n = Math.min(current, quantity - taken);
+                    if (cells.compareAndSet(cell, current, current - n)) {
+                        taken += n;
+                    }
+                }
+            }
+            return taken;
+        }
+
+        void add(int quantity) {
+            int share = quantity / stripes;
+            for (int i = 0; i < stripes; i++) {
+                int n = share + (i < quantity % stripes ? 1 : 0);
+                if (n > 0) {
+                    cells.getAndAdd(i * PADDING, n);
+                }
+            }
+        }
+
+        int drain() {
+            int drained = 0;
+            for (int i = 0; i < stripes; i++) {
+                drained += cells.getAndSet(i * PADDING, 0);
+            }
+            return drained;
+        }
+
+        int available() {
+            int available = 0;
+            for (int i = 0; i < stripes; i++) {
+                available += cells.get(i * PADDING);
+            }
+            return available;
+        }
+
+        void refillIfLow() {
+            if (retired || available() >= chunkSize / 2 || System.currentTimeMillis() < emptyUntil
+                    || !refilling.compareAndSet(false, true)) {
+                return;
+            }
+            executor.execute(() -> {
+                try {
+                    int leased = lease(productId);
+                    if (leased == 0) {
+                        emptyUntil = System.currentTimeMillis() + flushIntervalMillis;
+                    }
+                    deposit(this, leased);
+                } catch (RuntimeException ex) {
+                    log.warn("Could not lease stock for hot product {}", productId, ex);
+                } finally {
+                    refilling.set(false);
+                }
+            });
+        }
+
+        private int home() {
+            return (int) (Thread.currentThread().threadId() % stripes);
+        }
+    }
+
+    // Journals the order's ledger lines before it commits; settles or returns them once it has
+    private final class LedgerLines implements TransactionSynchronization {
+
+        private final long orderId;
+        private final Map<Long, Integer> quantities;
+        private long segment = -1;
+
+        private LedgerLines(long orderId, Map<Long, Integer> quantities) {
+            this.orderId = orderId;
+            this.quantities = quantities;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            segment = journal.append(orderId, quantities);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) {
+                sales.add(new Sale(orderId, segment, quantities));
+                return;
+            }
+            if (segment >= 0) {
+                journal.release(segment);
+            }
+            quantities.forEach((productId, quantity) -> {
+                Sku sku = skus.get(productId);
+                if (sku != null) {
+                    deposit(sku, quantity);
+                } else {
+                    executor.execute(() -> unlease(productId, quantity));
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.demo.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.ConflictException;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.databind.ObjectMapper;
+
+/*
+ * Responses of requests sent with an Idempotency-Key header, so a client retrying after a timeout gets the
+ * original answer instead of a second order or payment. A key belongs to one operation (scope) and one user. The
+ * first request claims it with a row in idempotency_keys, where the unique index settles races between nodes,
+ * then runs and stores its response there. A retry is answered from this node's memory or from that row without
+ * running anything. While the first request is still running a retry gets 409. A request that fails gives the
+ * key back, since nothing it did was committed. Keys live for the TTL; expired ones are purged in the background.
+ *
+ * A node that dies between committing the work and storing the response leaves the key claimed until it expires:
+ * retries keep getting 409 rather than a duplicate.
+ */
+@Slf4j
+@Service
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String CLAIM = """
+            insert into idempotency_keys (scope, user_id, idempotency_key, request_hash, created_at, expires_at)
+            values (:scope, :userId, :key, :hash, utc_timestamp(), utc_timestamp() + interval :ttl second)""";
+    private static final String FIND = """
+            select request_hash, status_code, response_body,
+                   timestampdiff(second, utc_timestamp(), expires_at) as remaining
+            from idempotency_keys where scope = :scope and user_id = :userId and idempotency_key = :key""";
+    private static final String COMPLETE = """
+            update idempotency_keys set status_code = :status, response_body = :body
+            where scope = :scope and user_id = :userId and idempotency_key = :key""";
+    private static final String RELEASE = """
+            delete from idempotency_keys
+            where scope = :scope and user_id = :userId and idempotency_key = :key and status_code is null""";
+    private static final String DELETE_EXPIRED = """
+            delete from idempotency_keys
+            where scope = :scope and user_id = :userId and idempotency_key = :key
+              and expires_at < utc_timestamp()""";
+    private static final String PURGE = "delete from idempotency_keys where expires_at < utc_timestamp() limit :limit";
+    private static final int PURGE_BATCH = 1000;
+
+    private record Stored(String requestHash, Integer status, String body, long expiresAt) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final long ttlMillis;
+    private final int memoryEntries;
+    private final Map<String, Stored> recent = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("idempotency-purger").daemon(true).factory());
+
+    public IdempotencyStore(NamedParameterJdbcTemplate jdbcTemplate,
+                            ObjectMapper objectMapper,
+                            @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${app.idempotency.memory-entries:100000}") int memoryEntries,
+                            @Value("${app.idempotency.purge-interval:10m}") Duration purgeInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ttlMillis = ttl.toMillis();
+        this.memoryEntries = memoryEntries;
+        long purgeMillis = purgeInterval.toMillis();
+        purger.scheduleWithFixedDelay(this::purgeQuietly, purgeMillis, purgeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs the work once per key; without a key it simply runs. Only successful responses are kept.
+    public ResponseEntity<?> execute(String scope, Long userId, String key, Object request,
+                                     Supplier<ResponseEntity<?>> work) {
+        if (key == null) {
+            return work.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = hash(request);
+        String id = scope + ':' + userId + ':' + key;
+        Stored recentResponse = recent.get(id);
+        if (recentResponse != null && recentResponse.expiresAt() > System.currentTimeMillis()) {
+            return replay(recentResponse, requestHash);
+        }
+
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("scope", scope)
+                .addValue("userId", userId)
+                .addValue("key", key);
+        while (!claim(parameters, requestHash)) {
+            Stored stored = find(parameters);
+            if (stored == null) {
+                // Given back by a failed first request in the meantime
+                continue;
+            }
+            if (stored.expiresAt() < System.currentTimeMillis()) {
+                jdbcTemplate.update(DELETE_EXPIRED, parameters);
+                continue;
+            }
+            if (stored.status() == null) {
+                checkSameRequest(stored, requestHash);
+                throw new ConflictException("A request with this " + HEADER + " is still being processed");
+            }
+            remember(id, stored);
+            return replay(stored, requestHash);
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = work.get();
+        } catch (RuntimeException | Error ex) {
+            jdbcTemplate.update(RELEASE, parameters);
+            throw ex;
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            jdbcTemplate.update(RELEASE, parameters);
+            return response;
+        }
+        String body = objectMapper.writeValueAsString(response.getBody());
+        jdbcTemplate.update(COMPLETE, parameters
+                .addValue("status", response.getStatusCode().value())
+                .addValue("body", body));
+        remember(id, new Stored(requestHash, response.getStatusCode().value(), body,
+                System.currentTimeMillis() + ttlMillis));
+        return response;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+    }
+
+    private boolean claim(MapSqlParameterSource parameters, String requestHash) {
+        try {
+            jdbcTemplate.update(CLAIM, new MapSqlParameterSource(parameters.getValues())
+                    .addValue("hash", requestHash)
+                    .addValue("ttl", ttlMillis / 1000));
+            return true;
+        } catch (DuplicateKeyException ex) {
+            return false;
+        }
+    }
+
+    private Stored find(MapSqlParameterSource parameters) {
+        // Expiry is measured by the database clock, which wrote it
+        long now = System.currentTimeMillis();
+        List<Stored> rows = jdbcTemplate.query(FIND, parameters, (rs, rowNum) -> new Stored(
+                rs.getString("request_hash"),
+                rs.getObject("status_code", Integer.class),
+                rs.getString("response_body"),
+                now + rs.getLong("remaining") * 1000));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    // Memory only speeds up retries on this node; past the cap the row still answers them
+    private void remember(String id, Stored stored) {
+        if (recent.size() < memoryEntries) {
+            recent.put(id, stored);
+        }
+    }
+
+    private ResponseEntity<?> replay(Stored stored, String requestHash) {
+        checkSameRequest(stored, requestHash);
+        return ResponseEntity.status(stored.status())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotent-Replayed", "true")
+                .body(stored.body());
+    }
+
+    private void checkSameRequest(Stored stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new BadRequestException(HEADER + " was already used for a different request");
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            long now = System.currentTimeMillis();
+            recent.values().removeIf(stored -> stored.expiresAt() <= now);
+            int purged = 0;
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update(PURGE, new MapSqlParameterSource("limit", PURGE_BATCH));
+                purged += deleted;
+            } while (deleted == PURGE_BATCH);
+            if (purged > 0) {
+                log.info("Purged {} expired idempotency keys", purged);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Idempotency key purge failed; will retry next interval", ex);
+        }
+    }
+}
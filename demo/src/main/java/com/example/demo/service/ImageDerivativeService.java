@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.domain.ImageVariant;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+// Generates resized variants of stored images off the request path. The pool and its queue are
+// bounded; when both are full the submitting thread runs the job itself, which throttles bulk writers
+// instead of dropping work.
+@Slf4j
+@Service
+public class ImageDerivativeService {
+
+    private static final Map<String, String> FORMATS = Map.of(
+            "jpg", "jpeg",
+            "png", "png",
+            "gif", "gif");
+
+    private final ImageStorageService imageStorageService;
+    private final ThreadPoolExecutor executor;
+
+    public ImageDerivativeService(ImageStorageService imageStorageService,
+                                  @Value("${app.images.derivatives.threads:2}") int threads,
+                                  @Value("${app.images.derivatives.queue-capacity:256}") int queueCapacity) {
+        this.imageStorageService = imageStorageService;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("image-derivatives-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public void generateAsync(List<String> imageUrls) {
+        if (imageUrls == null) {
+            return;
+        }
+        for (String url : imageUrls) {
+            String name = imageStorageService.nameOf(url);
+            if (name != null && FORMATS.containsKey(extensionOf(name))) {
+                executor.execute(() -> generate(name));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void generate(String name) {
+        try {
+            if (!imageStorageService.exists(name)) {
+                return;
+            }
+            List<ImageVariant> missing = List.of(ImageVariant.values()).stream()
+                    .filter(variant -> !imageStorageService.exists(variant.nameFor(name)))
+                    .toList();
+            if (missing.isEmpty()) {
+                return;
+            }
+            Path original = imageStorageService.resolve(name);
+            BufferedImage source = ImageIO.read(original.toFile());
+            if (source == null) {
+                log.warn("Skipping derivatives for {}: unreadable image", name);
+                return;
+            }
+            String format = FORMATS.get(extensionOf(name));
+            for (ImageVariant variant : missing) {
+                byte[] bytes = source.getWidth() <= variant.getWidth()
+                        ? Files.readAllBytes(original)
+                        : encode(scale(source, variant.getWidth(), format), format);
+                imageStorageService.writeDerived(variant.nameFor(name), bytes);
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Failed to generate derivatives for {}", name, ex);
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source, int width, String format) {
+        int height = Math.max(1, Math.round((float) source.getHeight() * width / source.getWidth()));
+        // JPEG has no alpha channel; everything else keeps transparency
+        int type = "jpeg".equals(format) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage scaled = new BufferedImage(width, height, type);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, out)) {
+            throw new IOException("No ImageIO writer for " + format);
+        }
+        return out.toByteArray();
+    }
+
+    private String extensionOf(String name) {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.domain.Category;
+import com.example.demo.domain.Product;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.ProductRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+// One-shot move of base64 data URLs stored in product/category rows into the image store.
+// Safe to re-run: rows that no longer hold data URLs are not selected again.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageMigrationService {
+
+    private static final int BATCH_SIZE = 50;
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ImageStorageService imageStorageService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final ProductIndexer productIndexer;
+    private final PlatformTransactionManager transactionManager;
+
+    public Map<String, Integer> migrateInlineImages() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        List<Long> productIds = productRepository.findIdsWithInlineImages();
+        int products = 0;
+        for (int from = 0; from < productIds.size(); from += BATCH_SIZE) {
+            List<Long> batch = productIds.subList(from, Math.min(from + BATCH_SIZE, productIds.size()));
+            products += tx.execute(status -> migrateProducts(batch));
+        }
+
+        int categories = tx.execute(status -> {
+            List<Category> inline = categoryRepository.findWithInlineImage();
+            inline.forEach(category -> category.setImage(imageStorageService.normalize(category.getImage())));
+            return inline.size();
+        });
+
+        log.info("Migrated inline images of {} products and {} categories", products, categories);
+        return Map.of("products", products, "categories", categories);
+    }
+
+    // Rows written before Product.primaryImage existed get it from their stored image URLs
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillPrimaryImages() {
+        int updated = productRepository.backfillPrimaryImages();
+        if (updated > 0) {
+            log.info("Backfilled primary image of {} products", updated);
+        }
+    }
+
+    private int migrateProducts(List<Long> ids) {
+        List<Product> products = productRepository.findAllById(ids);
+        for (Product product : products) {
+            product.setImages(imageStorageService.normalize(product.getImages()));
+            productIndexer.indexed(product);
+            imageDerivativeService.generateAsync(product.getImages());
+        }
+        return products.size();
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.demo.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.domain.ImageVariant;
+import com.example.demo.dto.StoredImage;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.ResourceNotFoundException;
+
+// Images live on disk under their SHA-256, fanned out as <root>/ab/cd/<hash>.<ext>.
+// Identical uploads share one file and a stored file never changes, so its hash is a strong ETag.
+@Service
+public class ImageStorageService {
+
+    public static final String URL_PREFIX = ImageVariant.URL_PREFIX;
+
+    // No SVG: it can carry script, and images are served from the application's own origin
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/jpeg", "jpg",
+            "image/png", "png",
+            "image/gif", "gif",
+            "image/webp", "webp",
+            "image/avif", "avif");
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "jpg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif",
+            "webp", "image/webp",
+            "avif", "image/avif");
+    private static final Pattern NAME = Pattern.compile("^[0-9a-f]{64}(-[a-z]+)?\\.[a-z]{3,4}$");
+
+    private final Path root;
+
+    public ImageStorageService(@Value("${app.images.dir:./data/images}") String dir) throws IOException {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        Files.createDirectories(root.resolve("tmp"));
+    }
+
+    public StoredImage store(InputStream content, String contentType) {
+        String extension = extensionFor(contentType);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            Path temp = Files.createTempFile(root.resolve("tmp"), "upload-", ".part");
+            try {
+                long size;
+                try (DigestInputStream in = new DigestInputStream(content, digest)) {
+                    size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                String hash = HexFormat.of().formatHex(digest.digest());
+                String name = hash + "." + extension;
+                Path target = pathFor(name);
+                boolean created = false;
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    try {
+                        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                        created = true;
+                    } catch (FileAlreadyExistsException ex) {
+                        // Same content stored concurrently; the existing file is identical
+                    }
+                }
+                if (!created) {
+                    // Handed out again: restarts the grace period sweep() gives unreferenced files
+                    touch(target);
+                }
+                return StoredImage.builder()
+                        .name(name)
+                        .hash(hash)
+                        .contentType(CONTENT_TYPES.get(extension))
+                        .size(size)
+                        .url(URL_PREFIX + name)
+                        .build();
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to store image", ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public boolean isDataUrl(String value) {
+        return value != null && value.startsWith("data:");
+    }
+
+    public StoredImage storeDataUrl(String dataUrl) {
+        int comma = dataUrl.indexOf(',');
+        int semicolon = dataUrl.indexOf(';');
+        if (comma < 0 || semicolon < 0 || semicolon > comma || !dataUrl.substring(semicolon, comma).contains("base64")) {
+            throw new BadRequestException("Unsupported image data URL");
+        }
+        String contentType = dataUrl.substring("data:".length(), semicolon);
+        byte[] bytes;
+        try {
+            bytes = Base64.getMimeDecoder().decode(dataUrl.substring(comma + 1));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Image data is not valid base64");
+        }
+        return store(new ByteArrayInputStream(bytes), contentType);
+    }
+
+    // Inline data URLs are moved to disk; URLs and paths are kept as they are
+    public String normalize(String image) {
+        return isDataUrl(image) ? storeDataUrl(image).getUrl() : image;
+    }
+
+    public List<String> normalize(List<String> images) {
+        // Mutable on purpose: the result ends up backing a Hibernate element collection
+        return images.stream().map(this::normalize).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // Deletes originals last stored before the cutoff that are not referenced, with their variants; returns how
+    // many originals went. The cutoff must leave room for uploads whose product is still being saved.
+    public int sweep(Instant storedBefore, Predicate<String> referenced) {
+        FileTime cutoff = FileTime.from(storedBefore);
+        List<Path> originals;
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            originals = files
+                    .filter(file -> !file.startsWith(root.resolve("tmp")))
+                    .filter(file -> {
+                        String name = file.getFileName().toString();
+                        return NAME.matcher(name).matches() && ImageVariant.originalNameOf(name) == null;
+                    })
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to list images", ex);
+        }
+        int deleted = 0;
+        for (Path original : originals) {
+            String name = original.getFileName().toString();
+            try {
+                // Checked last, so a file handed out again while the references were read survives
+                if (referenced.test(name) || Files.getLastModifiedTime(original).compareTo(cutoff) >= 0) {
+                    continue;
+                }
+                Files.deleteIfExists(original);
+                for (ImageVariant variant : ImageVariant.values()) {
+                    Files.deleteIfExists(pathFor(variant.nameFor(name)));
+                }
+                deleted++;
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to delete image " + name, ex);
+            }
+        }
+        return deleted;
+    }
+
+    public Path resolve(String name) {
+        if (!exists(name)) {
+            throw new ResourceNotFoundException("Image not found");
+        }
+        return pathFor(name);
+    }
+
+    public boolean exists(String name) {
+        return NAME.matcher(name).matches() && Files.isRegularFile(pathFor(name));
+    }
+
+    public String nameOf(String url) {
+        return url != null && url.startsWith(URL_PREFIX) ? url.substring(URL_PREFIX.length()) : null;
+    }
+
+    // Derived files (resized variants) are written next to their original, atomically
+    public void writeDerived(String name, byte[] bytes) {
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid image name: " + name);
+        }
+        try {
+            Path temp = Files.createTempFile(root.resolve("tmp"), "derived-", ".part");
+            try {
+                Files.write(temp, bytes);
+                Path target = pathFor(name);
+                Files.createDirectories(target.getParent());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to store derived image", ex);
+        }
+    }
+
+    public String contentTypeFor(String name) {
+        return CONTENT_TYPES.getOrDefault(name.substring(name.lastIndexOf('.') + 1), "application/octet-stream");
+    }
+
+    // Stored files never change, so the name (content hash plus variant) is a strong validator
+    public String etagFor(String name) {
+        return "\"" + name.substring(0, name.lastIndexOf('.')) + "\"";
+    }
+
+    private void touch(Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (NoSuchFileException ex) {
+            // Swept in the meantime; the next upload of the same content stores it again
+        }
+    }
+
+    private Path pathFor(String name) {
+        return root.resolve(name.substring(0, 2)).resolve(name.substring(2, 4)).resolve(name);
+    }
+
+    private String extensionFor(String contentType) {
+        String extension = contentType != null ? EXTENSIONS.get(contentType.trim().toLowerCase()) : null;
+        if (extension == null) {
+            throw new BadRequestException("Unsupported image type: " + contentType);
+        }
+        return extension;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Image files are shared by content, so nothing deletes one when a product lets go of it, and uploads or import
+ * rows that never made it into a product leave theirs behind. This job deletes the files no product or category
+ * references once they are older than min-age, which covers an upload whose product has not been saved yet.
+ */
+@Slf4j
+@Service
+public class ImageSweeper {
+
+    private static final String REFERENCED = """
+            select image from product_images where image like :prefix
+            union
+            select image from categories where image like :prefix""";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ImageStorageService imageStorageService;
+    private final Duration minAge;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("image-sweeper").daemon(true).factory());
+
+    public ImageSweeper(NamedParameterJdbcTemplate jdbcTemplate,
+                        ImageStorageService imageStorageService,
+                        @Value("${app.images.sweep.interval:6h}") Duration interval,
+                        @Value("${app.images.sweep.min-age:1d}") Duration minAge) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.imageStorageService = imageStorageService;
+        this.minAge = minAge;
+        executor.scheduleWithFixedDelay(this::sweepQuietly, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public int sweep() {
+        // References are read before the files are listed; a file referenced after that was stored or handed out
+        // again since, which makes it younger than the cutoff
+        Instant cutoff = Instant.now().minus(minAge);
+        Set<String> referenced = new HashSet<>();
+        jdbcTemplate.query(REFERENCED, new MapSqlParameterSource("prefix", ImageStorageService.URL_PREFIX + "%"),
+                rs -> {
+                    referenced.add(imageStorageService.nameOf(rs.getString(1)));
+                });
+        int deleted = imageStorageService.sweep(cutoff, referenced::contains);
+        if (deleted > 0) {
+            log.info("Deleted {} unreferenced images", deleted);
+        }
+        return deleted;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException ex) {
+            log.warn("Image sweep failed; will retry next interval", ex);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.domain.Order;
+import com.example.demo.domain.OrderItem;
+import com.example.demo.dto.StockShortage;
+import com.example.demo.exception.OutOfStockException;
+
+import lombok.RequiredArgsConstructor;
+
+/*
+ * Stock moves only through conditional updates ("stock >= qty" in the WHERE clause), never read-modify-write,
+ * so concurrent checkouts cannot oversell. All lines of a checkout go out as one JDBC batch (a single round
+ * trip with rewriteBatchedStatements); the per-statement update counts tell exactly which lines came up short.
+ * Products flagged hotSku are drawn from HotStockLedger first and only their remainder touches the row.
+ * Cart holds (CartHoldService) are counted in held_stock, next to leased_stock, and leave stock itself as the
+ * on-hand count that admins and imports set; checkout converts the held units it takes over in the same update.
+ */
+@Service
+@RequiredArgsConstructor
+public class InventoryService {
+
+    // Units leased to HotStockLedger or held for carts are spoken for; only the rest is up for grabs here. Of
+    // :quantity taken from the row, :held were the order's own cart holds. updated_at moves with stock because
+    // product ETags are derived from it.
+    private static final String RESERVE = """
+            update products set stock = stock - :quantity, held_stock = held_stock - :held,
+                                updated_at = utc_timestamp(6)
+            where id = :id and stock - leased_stock - held_stock >= :quantity - :held""";
+    private static final String RELEASE =
+            "update products set stock = stock + :quantity, updated_at = utc_timestamp(6) where id = :id";
+    private static final String HOLD = """
+            update products set held_stock = held_stock + :quantity
+            where id = :id and stock - leased_stock - held_stock >= :quantity""";
+    private static final String UNHOLD = "update products set held_stock = held_stock - :quantity where id = :id";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ProductIndexer productIndexer;
+    private final ProductCache productCache;
+    private final HotStockLedger hotStockLedger;
+
+    // Runs in the caller's transaction after the order row exists: a shortage throws, and the rollback returns
+    // every line already taken. Units the cart already holds are taken; hot products are served from the
+    // in-memory ledger first.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(Order order, Map<Long, Integer> held) {
+        Map<Long, Integer> quantities = order.getItems().stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), OrderItem::getQuantity, Integer::sum));
+        Map<Long, Integer> needed = new HashMap<>();
+        quantities.forEach((productId, quantity) -> {
+            int missing = quantity - held.getOrDefault(productId, 0);
+            if (missing > 0) {
+                needed.put(productId, missing);
+            }
+        });
+        HotStockLedger.Reservation reservation = hotStockLedger.reserve(order.getId(), needed);
+        if (!reservation.fromLedger().isEmpty()) {
+            order.setHotStockPending(true);
+        }
+        Map<Long, Integer> covered = new HashMap<>(held);
+        reservation.fromLedger().forEach((productId, quantity) -> covered.merge(productId, quantity, Integer::sum));
+        // Held units leave stock and held_stock together, in the same statement as the product's remainder
+        Map<Long, Integer> fromRow = new HashMap<>(reservation.remainder());
+        held.forEach((productId, quantity) -> fromRow.merge(productId, quantity, Integer::sum));
+        List<Long> productIds = take(RESERVE, fromRow, held, quantities, covered);
+        if (productIds.isEmpty()) {
+            return;
+        }
+
+        // Cached detail pages show stock; listing indexes only care once a product sells out
+        List<Long> soldOut = jdbcTemplate.queryForList(
+                "select id from products where id in (:ids) and stock <= 0",
+                new MapSqlParameterSource("ids", productIds), Long.class);
+        AfterCommit.run(() -> {
+            productIds.forEach(productCache::invalidate);
+            if (!soldOut.isEmpty()) {
+                productIndexer.reindex(soldOut);
+            }
+        });
+    }
+
+    // Cart holds: the same check on free stock as checkout, in the caller's transaction; stock itself is untouched
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void hold(Map<Long, Integer> quantities) {
+        take(HOLD, quantities, Map.of(), quantities, Map.of());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void unhold(Map<Long, Integer> quantities) {
+        jdbcTemplate.batchUpdate(UNHOLD, parameters(sortedIds(quantities), quantities, Map.of()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Map<Long, Integer> quantities) {
+        List<Long> productIds = sortedIds(quantities);
+        jdbcTemplate.batchUpdate(RELEASE, parameters(productIds, quantities, Map.of()));
+        AfterCommit.run(() -> productIndexer.reindex(productIds));
+    }
+
+    // requested and covered only feed the shortage report: covered units were secured before this update
+    private List<Long> take(String statement, Map<Long, Integer> quantities, Map<Long, Integer> held,
+                            Map<Long, Integer> requested, Map<Long, Integer> covered) {
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+        List<Long> productIds = sortedIds(quantities);
+        int[] updated = jdbcTemplate.batchUpdate(statement, parameters(productIds, quantities, held));
+
+        List<Long> shortIds = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                shortIds.add(productIds.get(i));
+            }
+        }
+        if (!shortIds.isEmpty()) {
+            throw new OutOfStockException(shortages(shortIds, requested, covered));
+        }
+        return productIds;
+    }
+
+    // Locking rows in id order keeps two checkouts over the same products from deadlocking each other
+    private List<Long> sortedIds(Map<Long, Integer> quantities) {
+        List<Long> productIds = new ArrayList<>(quantities.keySet());
+        Collections.sort(productIds);
+        return productIds;
+    }
+
+    private MapSqlParameterSource[] parameters(List<Long> productIds, Map<Long, Integer> quantities,
+                                               Map<Long, Integer> held) {
+        return productIds.stream()
+                .map(id -> new MapSqlParameterSource()
+                        .addValue("id", id)
+                        .addValue("quantity", quantities.get(id))
+                        .addValue("held", held.getOrDefault(id, 0)))
+                .toArray(MapSqlParameterSource[]::new);
+    }
+
+    // Available counts what was already covered (cart hold, ledger) plus what is neither leased nor held
+    private List<StockShortage> shortages(List<Long> shortIds, Map<Long, Integer> quantities,
+                                          Map<Long, Integer> covered) {
+        Map<Long, StockShortage> byId = new HashMap<>();
+        jdbcTemplate.query("select id, name, stock - leased_stock - held_stock as free from products where id in (:ids)",
+                new MapSqlParameterSource("ids", shortIds), rs -> {
+                    long id = rs.getLong("id");
+                    byId.put(id, new StockShortage(id, rs.getString("name"), quantities.get(id),
+                            Math.max(0, rs.getInt("free")) + covered.getOrDefault(id, 0)));
+                });
+        // A product deleted since it was added to the cart has nothing available
+        return shortIds.stream()
+                .map(id -> byId.getOrDefault(id, new StockShortage(id, null, quantities.get(id), 0)))
+                .toList();
+    }
+}
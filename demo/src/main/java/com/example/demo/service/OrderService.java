@@ -2,6 +2,9 @@ package com.example.demo.service;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -9,14 +12,16 @@ import org.springframework.transaction.annotation.Transactional;
 import com.example.demo.domain.Address;
 import com.example.demo.domain.Cart;
 import com.example.demo.domain.CartItem;
+import com.example.demo.domain.CheckoutStage;
 import com.example.demo.domain.Order;
 import com.example.demo.domain.OrderItem;
 import com.example.demo.domain.User;
 import com.example.demo.dto.CreateOrderRequest;
 import com.example.demo.dto.UpdateOrderRequest;
 import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.OutOfStockException;
+import com.example.demo.exception.PriceChangedException;
 import com.example.demo.exception.ResourceNotFoundException;
-import com.example.demo.repository.CartRepository;
 import com.example.demo.repository.OrderRepository;
 import com.example.demo.domain.OrderStatus;
 import com.example.demo.domain.PaymentStatus;
@@ -30,22 +35,132 @@ import lombok.RequiredArgsConstructor;
 public class OrderService {
 
     private final OrderRepository orderRepository;
-    private final CartRepository cartRepository;
+    private final CartStore cartStore;
     private final CouponService couponService;
+    private final CoPurchaseIndex coPurchaseIndex;
+    private final TrendingIndex trendingIndex;
+    private final InventoryService inventoryService;
+    private final CartHoldService cartHoldService;
+    private final CartService cartService;
+    private final ConflictRetry conflictRetry;
 
-    @Transactional
     public Order createOrder(User user, CreateOrderRequest request) {
-        Cart cart = cartRepository.findByUser(user)
-                .orElseThrow(() -> new BadRequestException("Cart is empty"));
+        return atCurrentPrices(user, () -> placeOrder(user, request));
+    }
+
+    // First stage of an asynchronous checkout (CheckoutPipeline): the repriced cart becomes an ACCEPTED order.
+    // The cart and its holds are left alone until the reserve stage; it is written through so the order is saved
+    // exactly once, from the cart as stored.
+    public Order acceptOrder(User user, CreateOrderRequest request) {
+        return atCurrentPrices(user, () -> cartStore.updateAndWrite(user, cart -> {
+            BigDecimal subtotal = subtotalOf(quoted(cart));
+            couponService.validateCouponIfPresent(request.getCouponCode(), subtotal);
+            return orderRepository.save(buildOrder(user, cart, request, BigDecimal.ZERO, CheckoutStage.ACCEPTED));
+        }));
+    }
+
+    // Reserve stage: the ordered units leave the cart, its holds cover what they can and the rest is taken from
+    // stock. False when the order is not ACCEPTED (another worker got there first).
+    public boolean reserveOrder(Long orderId) {
+        return conflictRetry.run(() -> {
+            Order order = lockedIn(orderId, CheckoutStage.ACCEPTED);
+            if (order == null) {
+                return false;
+            }
+            Map<Long, Integer> held = cartService.checkOut(order.getUser().getId(), quantitiesOf(order));
+            inventoryService.reserve(order, held);
+            order.setCheckoutStage(CheckoutStage.RESERVED);
+            return true;
+        });
+    }
+
+    public boolean applyOrderCoupon(Long orderId) {
+        return conflictRetry.run(() -> {
+            Order order = lockedIn(orderId, CheckoutStage.RESERVED);
+            if (order == null) {
+                return false;
+            }
+            BigDecimal discount = couponService.applyCouponIfPresent(order.getCouponCode(), order.getTotalAmount());
+            if (discount.compareTo(BigDecimal.ZERO) > 0) {
+                order.setDiscountAmount(discount);
+                order.setGrandTotal(order.getGrandTotal().subtract(discount));
+            }
+            order.setCheckoutStage(CheckoutStage.COUPON_APPLIED);
+            return true;
+        });
+    }
+
+    public boolean confirmOrder(Long orderId) {
+        return conflictRetry.run(() -> {
+            Order order = lockedIn(orderId, CheckoutStage.COUPON_APPLIED);
+            if (order == null) {
+                return false;
+            }
+            order.setCheckoutStage(CheckoutStage.CONFIRMED);
+            recordSale(order);
+            return true;
+        });
+    }
+
+    // A stage failed: stock taken so far goes back and the order is cancelled with the reason
+    public void failOrder(Long orderId, String reason) {
+        conflictRetry.run(() -> {
+            Order order = orderRepository.findLockedById(orderId).orElse(null);
+            if (order == null || order.getCheckoutStage() == null || order.getCheckoutStage().isTerminal()) {
+                return null;
+            }
+            if (order.getCheckoutStage() != CheckoutStage.ACCEPTED) {
+                inventoryService.release(quantitiesOf(order));
+            }
+            order.setCheckoutStage(CheckoutStage.FAILED);
+            order.setCheckoutError(reason);
+            order.setOrderStatus(OrderStatus.CANCELLED);
+            return null;
+        });
+    }
+
+    private Order atCurrentPrices(User user, Supplier<Order> checkout) {
+        try {
+            return conflictRetry.run(checkout);
+        } catch (PriceChangedException ex) {
+            // Nothing was written; store the new prices in their own transaction before reporting them
+            cartService.applyCurrentPrices(user);
+            throw ex;
+        }
+    }
+
+    private Order placeOrder(User user, CreateOrderRequest request) {
+        // Written through in this transaction: the cart is emptied exactly when the order commits
+        return cartStore.updateAndWrite(user, cart -> {
+            BigDecimal subtotal = subtotalOf(quoted(cart));
+            BigDecimal discount = couponService.applyCouponIfPresent(request.getCouponCode(), subtotal);
+            Order saved = orderRepository.save(buildOrder(user, cart, request, discount, CheckoutStage.CONFIRMED));
+            // Needs the order id for the hot-stock journal; a shortage still rolls back everything written so far
+            inventoryService.reserve(saved, cartHoldService.claim(cart));
+            cart.getItems().clear();
+            recordSale(saved);
+            return saved;
+        });
+    }
+
+    // Repriced and stock-checked in one query before anything is written
+    private Cart quoted(Cart cart) {
         if (cart.getItems().isEmpty()) {
             throw new BadRequestException("Cart is empty");
         }
+        CartService.Quote quote = cartService.quote(cart);
+        if (!quote.priceChanges().isEmpty()) {
+            throw new PriceChangedException(quote.priceChanges());
+        }
+        if (!quote.shortages().isEmpty()) {
+            throw new OutOfStockException(quote.shortages());
+        }
+        return cart;
+    }
 
-        BigDecimal subtotal = cart.getItems().stream()
-                .map(item -> item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal discount = couponService.applyCouponIfPresent(request.getCouponCode(), subtotal);
+    private Order buildOrder(User user, Cart cart, CreateOrderRequest request, BigDecimal discount,
+                             CheckoutStage stage) {
+        BigDecimal subtotal = subtotalOf(cart);
         BigDecimal grandTotal = subtotal.add(request.getShippingFee()).add(request.getTax()).subtract(discount);
 
         Order order = Order.builder()
@@ -58,6 +173,7 @@ public class OrderService {
                 .couponCode(request.getCouponCode())
                 .totalAmount(subtotal)
                 .grandTotal(grandTotal)
+                .checkoutStage(stage)
                 .build();
 
         for (CartItem item : cart.getItems()) {
@@ -67,11 +183,26 @@ public class OrderService {
                     .price(item.getPrice())
                     .build());
         }
+        return order;
+    }
 
-        Order saved = orderRepository.save(order);
-        cart.getItems().clear();
-        cartRepository.save(cart);
-        return saved;
+    private Order lockedIn(Long orderId, CheckoutStage stage) {
+        return orderRepository.findLockedById(orderId)
+                .filter(order -> order.getCheckoutStage() == stage)
+                .orElse(null);
+    }
+
+    private void recordSale(Order order) {
+        coPurchaseIndex.recordOrder(order.getItems().stream()
+                .map(item -> item.getProduct().getId())
+                .toList());
+        trendingIndex.recordOrder(quantitiesOf(order));
+    }
+
+    private static BigDecimal subtotalOf(Cart cart) {
+        return cart.getItems().stream()
+                .map(item -> item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
     @Transactional(readOnly = true)
@@ -90,6 +221,11 @@ public class OrderService {
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
     }
 
+    private Map<Long, Integer> quantitiesOf(Order order) {
+        return order.getItems().stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), OrderItem::getQuantity, Integer::sum));
+    }
+
     private Address buildAddress(CreateOrderRequest request) {
         Address address = new Address();
         address.setStreet(request.getStreet());
@@ -106,13 +242,26 @@ public class OrderService {
             throw new AccessDeniedException("Only admins can update orders");
         }
 
-        Order order = orderRepository.findById(id)
+        // Locked, so two concurrent cancellations cannot both give the stock back
+        Order order = orderRepository.findLockedById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
+        if (order.getCheckoutStage() != null && !order.getCheckoutStage().isTerminal()) {
+            throw new BadRequestException("Order is still being checked out");
+        }
 
         OrderStatus newOrderStatus = request.getOrderStatus();
         PaymentStatus newPaymentStatus = request.getPaymentStatus();
 
         if (newOrderStatus != null) {
+            if (order.getOrderStatus() == OrderStatus.CANCELLED && newOrderStatus != OrderStatus.CANCELLED) {
+                throw new BadRequestException("Cancelled orders cannot be reopened");
+            }
+            // Only CONFIRMED orders hold stock: FAILED ones gave it back, and orders without a stage were placed
+            // before stock was reserved at checkout
+            if (newOrderStatus == OrderStatus.CANCELLED && order.getOrderStatus() != OrderStatus.CANCELLED
+                    && order.getCheckoutStage() == CheckoutStage.CONFIRMED) {
+                inventoryService.release(quantitiesOf(order));
+            }
             order.setOrderStatus(newOrderStatus);
         }
 
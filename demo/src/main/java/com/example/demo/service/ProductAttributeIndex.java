@@ -0,0 +1,205 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.stereotype.Service;
+
+import com.example.demo.domain.Product;
+import com.example.demo.dto.FacetCount;
+import com.example.demo.exception.BadRequestException;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+// attribute -> value -> product ids over the parsed specifications. Values of one attribute are OR-ed,
+// attributes are AND-ed, so "ram=16gb&color=red&color=blue" reads as 16GB and (red or blue).
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductAttributeIndex implements ProductIndex {
+
+    private final SpecificationParser specificationParser;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Map<String, Set<Long>>> postings = new TreeMap<>();
+    private final Map<Long, Map<String, Set<String>>> entries = new HashMap<>();
+
+    public record Result(List<Long> productIds, long total, Map<String, List<FacetCount>> facets) {
+    }
+
+    @Override
+    public void index(Product product) {
+        Map<String, Set<String>> attributes;
+        try {
+            attributes = specificationParser.parse(product.getSpecifications());
+        } catch (BadRequestException ex) {
+            // Rows written before specifications were validated may hold free text; they just aren't filterable
+            log.debug("Skipping unparseable specifications of product {}", product.getId());
+            attributes = Map.of();
+        }
+
+        lock.writeLock().lock();
+        try {
+            unindex(product.getId());
+            if (attributes.isEmpty()) {
+                return;
+            }
+            attributes.forEach((attribute, values) -> {
+                Map<String, Set<Long>> byValue = postings.computeIfAbsent(attribute, a -> new TreeMap<>());
+                values.forEach(value -> byValue.computeIfAbsent(value, v -> new HashSet<>()).add(product.getId()));
+            });
+            entries.put(product.getId(), attributes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            unindex(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            entries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, List<FacetCount>> attributes() {
+        lock.readLock().lock();
+        try {
+            Map<String, List<FacetCount>> facets = new LinkedHashMap<>();
+            postings.forEach((attribute, byValue) -> {
+                List<FacetCount> counts = new ArrayList<>(byValue.size());
+                byValue.forEach((value, ids) -> counts.add(count(value, ids.size())));
+                counts.sort(Comparator.comparingLong(FacetCount::getCount).reversed());
+                facets.put(attribute, counts);
+            });
+            return facets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Matches come back newest first (descending id); facets count attribute values across all matches
+    public Result filter(Map<String, List<String>> constraints, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            Set<Long> matches = null;
+            for (Map.Entry<String, List<String>> constraint : constraints.entrySet()) {
+                Set<Long> union = union(SpecificationParser.normalizeKey(constraint.getKey()), constraint.getValue());
+                matches = matches == null ? union : intersect(matches, union);
+                if (matches.isEmpty()) {
+                    return new Result(List.of(), 0, Map.of());
+                }
+            }
+            if (matches == null) {
+                matches = entries.keySet();
+            }
+
+            List<Long> sorted = new ArrayList<>(matches);
+            sorted.sort(Comparator.reverseOrder());
+            List<Long> page = offset >= sorted.size()
+                    ? List.of()
+                    : List.copyOf(sorted.subList(offset, Math.min(sorted.size(), offset + limit)));
+            return new Result(page, sorted.size(), facetsOf(matches));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void unindex(Long productId) {
+        Map<String, Set<String>> previous = entries.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        previous.forEach((attribute, values) -> {
+            Map<String, Set<Long>> byValue = postings.get(attribute);
+            if (byValue == null) {
+                return;
+            }
+            for (String value : values) {
+                Set<Long> ids = byValue.get(value);
+                if (ids != null) {
+                    ids.remove(productId);
+                    if (ids.isEmpty()) {
+                        byValue.remove(value);
+                    }
+                }
+            }
+            if (byValue.isEmpty()) {
+                postings.remove(attribute);
+            }
+        });
+    }
+
+    private Set<Long> union(String attribute, List<String> values) {
+        Map<String, Set<Long>> byValue = postings.getOrDefault(attribute, Map.of());
+        Set<Long> union = new HashSet<>();
+        for (String value : values) {
+            Set<Long> ids = byValue.get(SpecificationParser.normalizeValue(value));
+            if (ids != null) {
+                union.addAll(ids);
+            }
+        }
+        return union;
+    }
+
+    private Set<Long> intersect(Set<Long> left, Set<Long> right) {
+        Set<Long> smaller = left.size() <= right.size() ? left : right;
+        Set<Long> larger = smaller == left ? right : left;
+        Set<Long> result = new HashSet<>();
+        for (Long id : smaller) {
+            if (larger.contains(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private Map<String, List<FacetCount>> facetsOf(Set<Long> matches) {
+        Map<String, Map<String, Long>> counts = new TreeMap<>();
+        for (Long id : matches) {
+            entries.get(id).forEach((attribute, values) -> {
+                Map<String, Long> byValue = counts.computeIfAbsent(attribute, a -> new HashMap<>());
+                values.forEach(value -> byValue.merge(value, 1L, Long::sum));
+            });
+        }
+        Map<String, List<FacetCount>> facets = new LinkedHashMap<>();
+        counts.forEach((attribute, byValue) -> {
+            List<FacetCount> list = new ArrayList<>(byValue.size());
+            byValue.forEach((value, count) -> list.add(count(value, count)));
+            list.sort(Comparator.comparingLong(FacetCount::getCount).reversed());
+            facets.put(attribute, list);
+        });
+        return facets;
+    }
+
+    private FacetCount count(String value, long count) {
+        return FacetCount.builder()
+                .value(value)
+                .label(value)
+                .count(count)
+                .build();
+    }
+}
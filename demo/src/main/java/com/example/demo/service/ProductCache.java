@@ -0,0 +1,181 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.domain.Product;
+import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.repository.ProductRepository;
+
+// Bounded LRU + TTL read-through cache of fully loaded (category and images) detached products.
+// Callers must treat returned instances as read-only; writes go through ProductService, which
+// invalidates via the ProductIndex hook.
+@Service
+public class ProductCache implements ProductIndex {
+
+    private final ProductRepository productRepository;
+    // Loads run in their own read-only transaction, so the cached instance is detached and never one a caller's
+    // transaction goes on to change
+    private final TransactionTemplate loader;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<Long, CachedProduct> entries;
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private record CachedProduct(Product product, long expiresAt) {
+    }
+
+    public ProductCache(ProductRepository productRepository,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${app.cache.products.max-size:10000}") int maxSize,
+                        @Value("${app.cache.products.ttl-seconds:600}") long ttlSeconds) {
+        this.productRepository = productRepository;
+        this.loader = new TransactionTemplate(transactionManager);
+        this.loader.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loader.setReadOnly(true);
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedProduct> eldest) {
+                if (size() > ProductCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Product get(Long id) {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            CachedProduct cached = entries.get(id);
+            if (cached != null) {
+                if (cached.expiresAt() > now) {
+                    hits.incrementAndGet();
+                    return cached.product();
+                }
+                entries.remove(id);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+
+        // Load outside the lock; skip caching if any invalidation raced with the load
+        long epoch = invalidationEpoch.get();
+        Product product = loader.execute(status -> productRepository.findWithDetailsById(id))
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        synchronized (lock) {
+            if (invalidationEpoch.get() == epoch) {
+                entries.put(id, new CachedProduct(product, now + ttlMillis));
+            }
+        }
+        return product;
+    }
+
+    // Hits from the cache, every miss in one query; unknown ids are simply absent from the result
+    public Map<Long, Product> getAll(Collection<Long> ids) {
+        long now = System.currentTimeMillis();
+        Map<Long, Product> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        synchronized (lock) {
+            for (Long id : ids) {
+                CachedProduct cached = entries.get(id);
+                if (cached != null && cached.expiresAt() > now) {
+                    found.put(id, cached.product());
+                } else {
+                    if (cached != null) {
+                        entries.remove(id);
+                        expirations.incrementAndGet();
+                    }
+                    missing.add(id);
+                }
+            }
+        }
+        hits.addAndGet(found.size());
+        if (missing.isEmpty()) {
+            return found;
+        }
+        misses.addAndGet(missing.size());
+
+        long epoch = invalidationEpoch.get();
+        List<Product> loaded = loader.execute(status -> productRepository.findWithDetailsByIdIn(missing));
+        synchronized (lock) {
+            boolean current = invalidationEpoch.get() == epoch;
+            for (Product product : loaded) {
+                found.put(product.getId(), product);
+                if (current) {
+                    entries.put(product.getId(), new CachedProduct(product, now + ttlMillis));
+                }
+            }
+        }
+        return found;
+    }
+
+    public void invalidate(Long id) {
+        synchronized (lock) {
+            invalidationEpoch.incrementAndGet();
+            if (entries.remove(id) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void index(Product product) {
+        invalidate(product.getId());
+    }
+
+    @Override
+    public void remove(Long productId) {
+        invalidate(productId);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            invalidationEpoch.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long requests = hitCount + missCount;
+        int size;
+        synchronized (lock) {
+            size = entries.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size);
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", requests == 0 ? 0.0 : (double) hitCount / requests);
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.domain.Product;
+import com.example.demo.dto.FacetCount;
+import com.example.demo.dto.ProductFilterRequest;
+import com.example.demo.exception.BadRequestException;
+
+/*
+ * Products are addressed by dense ordinals handed out in indexing order (the startup rebuild walks ids
+ * ascending, new products get ever larger ids), so ordinal order doubles as "newest first" when walked
+ * backwards. Every facet value owns a BitSet of ordinals; filtering and counting are word-wise AND plus
+ * cardinality. Ordinals of deleted products are simply cleared from "live" and reclaimed on the next rebuild.
+ */
+@Service
+public class ProductFacetIndex implements ProductIndex {
+
+    private static final int RATING_BUCKETS = 6;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<BigDecimal> priceBoundaries;
+    private final List<String> priceBandKeys;
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, BitSet> byCategory = new HashMap<>();
+    private final Map<Long, String> categoryNames = new HashMap<>();
+    private final BitSet[] byPriceBand;
+    private final BitSet[] byRating = new BitSet[RATING_BUCKETS];
+    private final BitSet inStock = new BitSet();
+    private final BitSet live = new BitSet();
+    private long[] ordinalToId = new long[1024];
+    private int nextOrdinal;
+
+    private record Entry(int ordinal, Long categoryId, int priceBand, int ratingBucket, boolean inStock) {
+    }
+
+    public record Result(List<Long> productIds, long total, Map<String, List<FacetCount>> facets) {
+    }
+
+    public ProductFacetIndex(@Value("${app.catalog.facets.price-bands:10,100,1000}") String priceBands) {
+        this.priceBoundaries = Arrays.stream(priceBands.split(","))
+                .map(String::trim)
+                .map(BigDecimal::new)
+                .sorted()
+                .toList();
+        this.priceBandKeys = new ArrayList<>();
+        BigDecimal lower = BigDecimal.ZERO;
+        for (BigDecimal upper : priceBoundaries) {
+            priceBandKeys.add(lower.toPlainString() + "-" + upper.toPlainString());
+            lower = upper;
+        }
+        priceBandKeys.add(lower.toPlainString() + "+");
+        this.byPriceBand = new BitSet[priceBandKeys.size()];
+        for (int i = 0; i < byPriceBand.length; i++) {
+            byPriceBand[i] = new BitSet();
+        }
+        for (int i = 0; i < RATING_BUCKETS; i++) {
+            byRating[i] = new BitSet();
+        }
+    }
+
+    @Override
+    public void index(Product product) {
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        String categoryName = product.getCategory() != null ? product.getCategory().getName() : null;
+        int priceBand = priceBand(effectivePrice(product));
+        int ratingBucket = ratingBucket(product.getRatingAverage());
+        boolean available = product.getStock() != null && product.getStock() > 0;
+
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.get(product.getId());
+            int ordinal = previous != null ? previous.ordinal() : allocate(product.getId());
+            if (previous != null) {
+                clearBits(previous);
+            }
+            Entry entry = new Entry(ordinal, categoryId, priceBand, ratingBucket, available);
+            entries.put(product.getId(), entry);
+            if (categoryId != null) {
+                byCategory.computeIfAbsent(categoryId, id -> new BitSet()).set(ordinal);
+                if (categoryName != null) {
+                    categoryNames.put(categoryId, categoryName);
+                }
+            }
+            byPriceBand[priceBand].set(ordinal);
+            byRating[ratingBucket].set(ordinal);
+            inStock.set(ordinal, available);
+            live.set(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(productId);
+            if (previous != null) {
+                clearBits(previous);
+                live.clear(previous.ordinal());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            byCategory.clear();
+            categoryNames.clear();
+            Arrays.stream(byPriceBand).forEach(BitSet::clear);
+            Arrays.stream(byRating).forEach(BitSet::clear);
+            inStock.clear();
+            live.clear();
+            ordinalToId = new long[1024];
+            nextOrdinal = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Result filter(ProductFilterRequest filter, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet categorySet = categorySet(filter.getCategory());
+            BitSet priceSet = priceSet(filter.getPrice());
+            BitSet ratingSet = ratingAtLeast(filter.getMinRating());
+            BitSet stockSet = Boolean.TRUE.equals(filter.getInStock()) ? inStock : live;
+
+            BitSet matches = and(categorySet, priceSet, ratingSet, stockSet);
+
+            // Disjunctive counts: each dimension is counted against every other active filter but its own
+            Map<String, List<FacetCount>> facets = new LinkedHashMap<>();
+            facets.put("category", categoryCounts(and(priceSet, ratingSet, stockSet)));
+            facets.put("price", priceCounts(and(categorySet, ratingSet, stockSet)));
+            facets.put("rating", ratingCounts(and(categorySet, priceSet, stockSet)));
+            facets.put("inStock", List.of(FacetCount.builder()
+                    .value("true")
+                    .label("In stock")
+                    .count(intersectionCount(and(categorySet, priceSet, ratingSet), inStock))
+                    .build()));
+
+            return new Result(page(matches, offset, limit), matches.cardinality(), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int allocate(Long productId) {
+        if (nextOrdinal == ordinalToId.length) {
+            ordinalToId = Arrays.copyOf(ordinalToId, ordinalToId.length * 2);
+        }
+        ordinalToId[nextOrdinal] = productId;
+        return nextOrdinal++;
+    }
+
+    private void clearBits(Entry entry) {
+        if (entry.categoryId() != null) {
+            BitSet categoryBits = byCategory.get(entry.categoryId());
+            if (categoryBits != null) {
+                categoryBits.clear(entry.ordinal());
+            }
+        }
+        byPriceBand[entry.priceBand()].clear(entry.ordinal());
+        byRating[entry.ratingBucket()].clear(entry.ordinal());
+        inStock.clear(entry.ordinal());
+    }
+
+    private BigDecimal effectivePrice(Product product) {
+        BigDecimal salePrice = product.getSalePrice();
+        if (salePrice != null && salePrice.compareTo(BigDecimal.ZERO) > 0) {
+            return salePrice;
+        }
+        return product.getPrice() != null ? product.getPrice() : BigDecimal.ZERO;
+    }
+
+    private int priceBand(BigDecimal price) {
+        int band = 0;
+        while (band < priceBoundaries.size() && price.compareTo(priceBoundaries.get(band)) >= 0) {
+            band++;
+        }
+        return band;
+    }
+
+    private int ratingBucket(Double rating) {
+        if (rating == null) {
+            return 0;
+        }
+        return Math.max(0, Math.min(RATING_BUCKETS - 1, (int) Math.floor(rating)));
+    }
+
+    private BitSet categorySet(List<Long> categoryIds) {
+        if (categoryIds == null || categoryIds.isEmpty()) {
+            return live;
+        }
+        BitSet union = new BitSet();
+        for (Long categoryId : categoryIds) {
+            BitSet bits = byCategory.get(categoryId);
+            if (bits != null) {
+                union.or(bits);
+            }
+        }
+        return union;
+    }
+
+    private BitSet priceSet(List<String> bandKeys) {
+        if (bandKeys == null || bandKeys.isEmpty()) {
+            return live;
+        }
+        BitSet union = new BitSet();
+        for (String key : bandKeys) {
+            int band = priceBandKeys.indexOf(key.trim());
+            if (band < 0) {
+                throw new BadRequestException("Unknown price band: " + key);
+            }
+            union.or(byPriceBand[band]);
+        }
+        return union;
+    }
+
+    private BitSet ratingAtLeast(Integer minRating) {
+        if (minRating == null || minRating <= 0) {
+            return live;
+        }
+        BitSet union = new BitSet();
+        for (int bucket = Math.min(minRating, RATING_BUCKETS - 1); bucket < RATING_BUCKETS; bucket++) {
+            union.or(byRating[bucket]);
+        }
+        return union;
+    }
+
+    private BitSet and(BitSet... sets) {
+        BitSet result = (BitSet) live.clone();
+        for (BitSet set : sets) {
+            if (set != live) {
+                result.and(set);
+            }
+        }
+        return result;
+    }
+
+    private long intersectionCount(BitSet base, BitSet other) {
+        BitSet copy = (BitSet) base.clone();
+        copy.and(other);
+        return copy.cardinality();
+    }
+
+    private List<FacetCount> categoryCounts(BitSet base) {
+        List<FacetCount> counts = new ArrayList<>();
+        byCategory.forEach((categoryId, bits) -> {
+            long count = intersectionCount(base, bits);
+            if (count > 0) {
+                counts.add(FacetCount.builder()
+                        .value(String.valueOf(categoryId))
+                        .label(categoryNames.getOrDefault(categoryId, String.valueOf(categoryId)))
+                        .count(count)
+                        .build());
+            }
+        });
+        counts.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        return counts;
+    }
+
+    private List<FacetCount> priceCounts(BitSet base) {
+        List<FacetCount> counts = new ArrayList<>();
+        for (int band = 0; band < byPriceBand.length; band++) {
+            counts.add(FacetCount.builder()
+                    .value(priceBandKeys.get(band))
+                    .label(priceBandKeys.get(band))
+                    .count(intersectionCount(base, byPriceBand[band]))
+                    .build());
+        }
+        return counts;
+    }
+
+    private List<FacetCount> ratingCounts(BitSet base) {
+        List<FacetCount> counts = new ArrayList<>();
+        for (int minRating = RATING_BUCKETS - 1; minRating >= 1; minRating--) {
+            counts.add(FacetCount.builder()
+                    .value(String.valueOf(minRating))
+                    .label(minRating == RATING_BUCKETS - 1 ? minRating + " stars" : minRating + " stars & up")
+                    .count(intersectionCount(base, ratingAtLeast(minRating)))
+                    .build());
+        }
+        return counts;
+    }
+
+    private List<Long> page(BitSet matches, int offset, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        int skipped = 0;
+        for (int ordinal = matches.previousSetBit(nextOrdinal - 1);
+                ordinal >= 0 && ids.size() < limit;
+                ordinal = matches.previousSetBit(ordinal - 1)) {
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                ids.add(ordinalToId[ordinal]);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,407 @@
+package com.example.demo.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.domain.Category;
+import com.example.demo.dto.ImportReport;
+import com.example.demo.dto.ProductRequest;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.repository.CategoryRepository;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+/*
+ * Bulk product import. Input is read one record at a time and never held whole; every batch-size records
+ * the valid ones are written with two JDBC batches (products, then their images) in one transaction.
+ * Hibernate cannot batch IDENTITY inserts, plain JDBC can (with rewriteBatchedStatements on MySQL).
+ * A failing batch is rolled back and reported without stopping the import.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+
+    private static final String INSERT_PRODUCT = """
+            insert into products (name, description, price, sale_price, category_id, primary_image, stock,
+                                  rating_average, rating_count, specifications, created_at, updated_at)
+            values (?, ?, ?, ?, ?, ?, ?, 0, 0, ?, ?, ?)""";
+    private static final String INSERT_IMAGE = "insert into product_images (product_id, image) values (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final CategoryRepository categoryRepository;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final SpecificationParser specificationParser;
+    private final ImageStorageService imageStorageService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final ProductIndexer productIndexer;
+
+    @Value("${app.catalog.import.batch-size:500}")
+    private int batchSize;
+
+    private record PendingProduct(long row, ProductRequest request) {
+    }
+
+    private interface RecordSource {
+        // Next record keyed by normalized field name, null at end of input
+        Map<String, Object> next() throws IOException;
+    }
+
+    private static final class InvalidRecordException extends RuntimeException {
+        private InvalidRecordException(String message) {
+            super(message);
+        }
+    }
+
+    private final class Batch {
+        private final int number;
+        private final long firstRow;
+        private long lastRow;
+        private final List<PendingProduct> valid = new ArrayList<>();
+        private final List<ImportReport.RowError> errors = new ArrayList<>();
+
+        private Batch(int number, long firstRow) {
+            this.number = number;
+            this.firstRow = firstRow;
+        }
+
+        private int size() {
+            return valid.size() + errors.size();
+        }
+    }
+
+    public ImportReport importProducts(InputStream input, DataFormat format) throws IOException {
+        long started = System.currentTimeMillis();
+        Map<Long, Category> categoriesById = new HashMap<>();
+        Map<String, Long> categoryIdsByName = new HashMap<>();
+        for (Category category : categoryRepository.findAll()) {
+            categoriesById.put(category.getId(), category);
+            categoryIdsByName.put(TextTokenizer.normalize(category.getName()).trim(), category.getId());
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        RecordSource source = format == DataFormat.CSV ? csvSource(reader) : jsonlSource(reader);
+        List<ImportReport.Batch> reports = new ArrayList<>();
+        long rows = 0;
+        long imported = 0;
+        Batch batch = new Batch(1, 1);
+        while (true) {
+            Map<String, Object> fields;
+            try {
+                fields = source.next();
+            } catch (InvalidRecordException ex) {
+                rows++;
+                batch.lastRow = rows;
+                batch.errors.add(new ImportReport.RowError(rows, ex.getMessage()));
+                fields = Map.of();
+            }
+            if (fields == null) {
+                break;
+            }
+            if (!fields.isEmpty()) {
+                rows++;
+                batch.lastRow = rows;
+                try {
+                    ProductRequest request = toRequest(fields, categoriesById, categoryIdsByName);
+                    batch.valid.add(new PendingProduct(rows, request));
+                } catch (InvalidRecordException | BadRequestException ex) {
+                    batch.errors.add(new ImportReport.RowError(rows, ex.getMessage()));
+                }
+            }
+            if (batch.size() >= batchSize) {
+                ImportReport.Batch report = flush(batch);
+                imported += report.getImported();
+                reports.add(report);
+                batch = new Batch(batch.number + 1, rows + 1);
+            }
+        }
+        if (batch.size() > 0) {
+            ImportReport.Batch report = flush(batch);
+            imported += report.getImported();
+            reports.add(report);
+        }
+
+        long elapsed = System.currentTimeMillis() - started;
+        log.info("Imported {} of {} product rows ({}) in {} ms", imported, rows, format, elapsed);
+        return ImportReport.builder()
+                .format(format.name())
+                .rows(rows)
+                .imported(imported)
+                .failed(rows - imported)
+                .elapsedMs(elapsed)
+                .batches(reports)
+                .build();
+    }
+
+    private ImportReport.Batch flush(Batch batch) {
+        List<ImportReport.RowError> errors = new ArrayList<>(batch.errors);
+        // Inline images are written to disk only for rows about to be inserted. Files are shared by content, so
+        // those of rows that end up rejected or rolled back are left to ImageSweeper rather than deleted here.
+        List<PendingProduct> products = new ArrayList<>();
+        for (PendingProduct pending : batch.valid) {
+            try {
+                pending.request().setImages(imageStorageService.normalize(pending.request().getImages()));
+                products.add(pending);
+            } catch (BadRequestException ex) {
+                errors.add(new ImportReport.RowError(pending.row(), "images: " + ex.getMessage()));
+            }
+        }
+        int imported = 0;
+        if (!products.isEmpty()) {
+            try {
+                List<Long> ids = new TransactionTemplate(transactionManager).execute(status -> insert(products));
+                imported = ids.size();
+                productIndexer.reindex(ids);
+                products.forEach(pending -> imageDerivativeService.generateAsync(pending.request().getImages()));
+            } catch (DataAccessException ex) {
+                String message = "Batch rolled back: " + NestedExceptionUtils.getMostSpecificCause(ex).getMessage();
+                products.forEach(pending -> errors.add(new ImportReport.RowError(pending.row(), message)));
+            }
+        }
+        errors.sort((a, b) -> Long.compare(a.row(), b.row()));
+        return ImportReport.Batch.builder()
+                .batch(batch.number)
+                .firstRow(batch.firstRow)
+                .lastRow(batch.lastRow)
+                .imported(imported)
+                .failed(batch.size() - imported)
+                .errors(errors)
+                .build();
+    }
+
+    private List<Long> insert(List<PendingProduct> products) {
+        Timestamp now = Timestamp.from(Instant.now());
+        // Same UTC normalization Hibernate applies to Instant columns
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_PRODUCT, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ProductRequest request = products.get(i).request();
+                        List<String> images = request.getImages();
+                        ps.setString(1, request.getName());
+                        ps.setString(2, request.getDescription());
+                        ps.setBigDecimal(3, request.getPrice());
+                        ps.setBigDecimal(4, request.getSalePrice() != null ? request.getSalePrice() : BigDecimal.ZERO);
+                        ps.setLong(5, request.getCategoryId());
+                        ps.setString(6, images.isEmpty() ? null : images.get(0));
+                        ps.setInt(7, request.getStock() != null ? request.getStock() : 0);
+                        if (request.getSpecifications() != null) {
+                            ps.setString(8, request.getSpecifications());
+                        } else {
+                            ps.setNull(8, Types.LONGVARCHAR);
+                        }
+                        ps.setTimestamp(9, now, utc);
+                        ps.setTimestamp(10, now, utc);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return products.size();
+                    }
+                }, keys);
+
+        List<Long> ids = keys.getKeyList().stream()
+                .map(key -> ((Number) key.values().iterator().next()).longValue())
+                .toList();
+        List<Object[]> images = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            for (String image : products.get(i).request().getImages()) {
+                images.add(new Object[] {ids.get(i), image});
+            }
+        }
+        if (!images.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_IMAGE, images);
+        }
+        return ids;
+    }
+
+    private ProductRequest toRequest(Map<String, Object> fields, Map<Long, Category> categoriesById,
+                                     Map<String, Long> categoryIdsByName) {
+        ProductRequest request = new ProductRequest();
+        request.setName(text(fields.get("name")));
+        request.setDescription(text(fields.get("description")));
+        request.setPrice(decimal(fields.get("price"), "price"));
+        request.setSalePrice(decimal(fields.get("saleprice"), "salePrice"));
+        request.setStock(integer(fields.get("stock")));
+        request.setCategoryId(categoryId(fields, categoriesById, categoryIdsByName));
+        request.setSpecifications(specifications(fields.get("specifications")));
+        request.setImages(images(fields.get("images")));
+
+        Collection<ConstraintViolation<ProductRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            throw new InvalidRecordException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        specificationParser.parse(request.getSpecifications());
+        return request;
+    }
+
+    private Long categoryId(Map<String, Object> fields, Map<Long, Category> categoriesById,
+                            Map<String, Long> categoryIdsByName) {
+        String id = text(fields.get("categoryid"));
+        if (id != null) {
+            try {
+                Long categoryId = Long.valueOf(id);
+                if (!categoriesById.containsKey(categoryId)) {
+                    throw new InvalidRecordException("categoryId: unknown category " + id);
+                }
+                return categoryId;
+            } catch (NumberFormatException ex) {
+                throw new InvalidRecordException("categoryId: not a number");
+            }
+        }
+        String name = text(fields.get("category"));
+        if (name == null) {
+            return null;
+        }
+        Long categoryId = categoryIdsByName.get(TextTokenizer.normalize(name).trim());
+        if (categoryId == null) {
+            throw new InvalidRecordException("category: unknown category " + name);
+        }
+        return categoryId;
+    }
+
+    private String text(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String text = String.valueOf(value).trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    private BigDecimal decimal(Object value, String field) {
+        String text = text(value);
+        try {
+            return text == null ? null : new BigDecimal(text);
+        } catch (NumberFormatException ex) {
+            throw new InvalidRecordException(field + ": not a number");
+        }
+    }
+
+    private Integer integer(Object value) {
+        String text = text(value);
+        try {
+            return text == null ? null : Integer.valueOf(text);
+        } catch (NumberFormatException ex) {
+            throw new InvalidRecordException("stock: not a whole number");
+        }
+    }
+
+    // JSONL rows may carry specifications as a nested object; CSV rows carry the JSON text
+    private String specifications(Object value) {
+        if (value instanceof Map<?, ?> || value instanceof List<?>) {
+            return objectMapper.writeValueAsString(value);
+        }
+        return text(value);
+    }
+
+    // JSONL: an array of URLs; CSV: URLs separated by '|'
+    private List<String> images(Object value) {
+        if (value instanceof List<?> list) {
+            return list.stream().map(this::text).filter(url -> url != null).toList();
+        }
+        String text = text(value);
+        if (text == null) {
+            return List.of();
+        }
+        return Arrays.stream(text.split("\\|")).map(String::trim).filter(url -> !url.isEmpty()).toList();
+    }
+
+    private RecordSource csvSource(BufferedReader reader) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            throw new BadRequestException("CSV import needs a header row");
+        }
+        List<String> columns = header.stream().map(this::fieldName).toList();
+        return () -> {
+            List<String> values;
+            do {
+                values = csv.next();
+            } while (values != null && values.stream().allMatch(String::isBlank));
+            if (values == null) {
+                return null;
+            }
+            if (values.size() > columns.size()) {
+                throw new InvalidRecordException("Expected " + columns.size() + " columns, found " + values.size());
+            }
+            Map<String, Object> fields = new LinkedHashMap<>();
+            for (int i = 0; i < values.size(); i++) {
+                fields.put(columns.get(i), values.get(i));
+            }
+            return fields;
+        };
+    }
+
+    private RecordSource jsonlSource(BufferedReader reader) {
+        return () -> {
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && line.isBlank());
+            if (line == null) {
+                return null;
+            }
+            Object value;
+            try {
+                value = objectMapper.readValue(line, Object.class);
+            } catch (JacksonException ex) {
+                throw new InvalidRecordException("Invalid JSON");
+            }
+            if (!(value instanceof Map<?, ?> map)) {
+                throw new InvalidRecordException("Expected a JSON object");
+            }
+            Map<String, Object> fields = new LinkedHashMap<>();
+            map.forEach((name, field) -> fields.put(fieldName(String.valueOf(name)), field));
+            return fields;
+        };
+    }
+
+    // "salePrice", "sale_price" and "Sale Price" all name the same field
+    private String fieldName(String name) {
+        return name.replaceAll("[\\s_-]", "").toLowerCase(Locale.ROOT);
+    }
+}
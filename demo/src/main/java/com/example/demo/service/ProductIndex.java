@@ -0,0 +1,12 @@
+package com.example.demo.service;
+
+import com.example.demo.domain.Product;
+
+public interface ProductIndex {
+
+    void index(Product product);
+
+    void remove(Long productId);
+
+    void clear();
+}
@@ -0,0 +1,81 @@
+package com.example.demo.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.domain.Product;
+import com.example.demo.repository.ProductRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductIndexer {
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final List<ProductIndex> indexes;
+    private final ProductRepository productRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    public void indexed(Product product) {
+        AfterCommit.run(() -> indexes.forEach(index -> index.index(product)));
+    }
+
+    public void removed(Long productId) {
+        AfterCommit.run(() -> indexes.forEach(index -> index.remove(productId)));
+    }
+
+    // For rows written outside JPA (bulk import): load them fully and index as if saved through ProductService
+    public void reindex(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        readOnly().executeWithoutResult(status ->
+                productRepository.findWithDetailsByIdIn(productIds).forEach(this::indexed));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        indexes.forEach(ProductIndex::clear);
+
+        // One short read-only transaction per batch keeps the persistence context small
+        TransactionTemplate tx = readOnly();
+        ScrollPosition position = ScrollPosition.keyset();
+        int total = 0;
+        while (position != null) {
+            ScrollPosition current = position;
+            Window<Product> window = tx.execute(status -> {
+                Window<Product> batch = productRepository.findAllBy(current, Sort.by("id"), Limit.of(REBUILD_BATCH_SIZE));
+                batch.forEach(this::indexed);
+                return batch;
+            });
+            total += window.size();
+            position = window.hasNext() && !window.isEmpty() ? window.positionAt(window.size() - 1) : null;
+        }
+        log.info("Rebuilt {} product indexes over {} products in {} ms",
+                indexes.size(), total, System.currentTimeMillis() - started);
+    }
+
+    private TransactionTemplate readOnly() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        // reindex may be called from an afterCommit callback, where joining the finished transaction would be wrong
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return tx;
+    }
+}
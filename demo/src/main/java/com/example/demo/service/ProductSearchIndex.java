@@ -0,0 +1,200 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.stereotype.Service;
+
+import com.example.demo.domain.Product;
+
+@Service
+public class ProductSearchIndex implements ProductIndex {
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float CATEGORY_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    private static final float PREFIX_PENALTY = 0.6f;
+    private static final int MAX_PREFIX_EXPANSION = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    private record Entry(Set<String> terms, double rating, boolean inStock) {
+    }
+
+    private record Hit(Long productId, float score) {
+    }
+
+    @Override
+    public void index(Product product) {
+        Map<String, Float> weights = new HashMap<>();
+        addField(weights, product.getName(), NAME_WEIGHT);
+        addField(weights, product.getCategory() != null ? product.getCategory().getName() : null, CATEGORY_WEIGHT);
+        addField(weights, product.getDescription(), DESCRIPTION_WEIGHT);
+        Entry entry = new Entry(weights.keySet(),
+                product.getRatingAverage() != null ? product.getRatingAverage() : 0.0,
+                product.getStock() != null && product.getStock() > 0);
+
+        lock.writeLock().lock();
+        try {
+            unindex(product.getId());
+            weights.forEach((term, weight) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(product.getId(), weight));
+            entries.put(product.getId(), entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            unindex(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            entries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Every query token must match; the last one also matches as a prefix so partially typed words still hit
+    public List<Long> search(String query, int limit) {
+        List<String> tokens = TextTokenizer.tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Float> scores = null;
+            for (int i = 0; i < tokens.size(); i++) {
+                Map<Long, Float> matches = match(tokens.get(i), i == tokens.size() - 1);
+                scores = scores == null ? matches : intersect(scores, matches);
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            return topK(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addField(Map<String, Float> weights, String text, float fieldWeight) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : TextTokenizer.tokenize(text)) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        frequencies.forEach((term, tf) ->
+                weights.merge(term, fieldWeight * (1 + (float) Math.log(tf)), Float::sum));
+    }
+
+    private void unindex(Long productId) {
+        Entry previous = entries.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        for (String term : previous.terms()) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(productId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private Map<Long, Float> match(String token, boolean prefix) {
+        Map<Long, Float> matches = new HashMap<>();
+        Map<Long, Float> exact = postings.get(token);
+        if (exact != null) {
+            accumulate(matches, exact, idf(exact.size()));
+        }
+        if (prefix) {
+            int expanded = 0;
+            for (Map<Long, Float> posting : postings.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                if (++expanded > MAX_PREFIX_EXPANSION) {
+                    break;
+                }
+                accumulate(matches, posting, idf(posting.size()) * PREFIX_PENALTY);
+            }
+        }
+        return matches;
+    }
+
+    private void accumulate(Map<Long, Float> matches, Map<Long, Float> posting, float multiplier) {
+        // A product reached through several expansions of the same token counts once, at its best match
+        posting.forEach((id, weight) -> matches.merge(id, weight * multiplier, Math::max));
+    }
+
+    private float idf(int documentFrequency) {
+        return (float) Math.log(1 + (double) entries.size() / documentFrequency);
+    }
+
+    private Map<Long, Float> intersect(Map<Long, Float> left, Map<Long, Float> right) {
+        Map<Long, Float> smaller = left.size() <= right.size() ? left : right;
+        Map<Long, Float> larger = smaller == left ? right : left;
+        Map<Long, Float> result = new HashMap<>();
+        smaller.forEach((id, score) -> {
+            Float other = larger.get(id);
+            if (other != null) {
+                result.put(id, score + other);
+            }
+        });
+        return result;
+    }
+
+    private List<Long> topK(Map<Long, Float> scores, int limit) {
+        PriorityQueue<Hit> heap = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+        scores.forEach((id, score) -> {
+            Hit hit = new Hit(id, score * boost(entries.get(id)));
+            if (heap.size() < limit) {
+                heap.add(hit);
+            } else if (hit.score() > heap.peek().score()) {
+                heap.poll();
+                heap.add(hit);
+            }
+        });
+        List<Long> ranked = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            ranked.add(heap.poll().productId());
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    private float boost(Entry entry) {
+        float ratingBoost = 1 + 0.1f * (float) entry.rating();
+        return entry.inStock() ? ratingBoost : ratingBoost * 0.5f;
+    }
+}
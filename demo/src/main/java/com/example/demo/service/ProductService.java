@@ -1,12 +1,35 @@
 package com.example.demo.service;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.MultiValueMap;
 
 import com.example.demo.domain.Category;
 import com.example.demo.domain.Product;
+import com.example.demo.domain.ProductSort;
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.FacetCount;
+import com.example.demo.dto.FacetedPage;
+import com.example.demo.dto.ProductFilterRequest;
 import com.example.demo.dto.ProductRequest;
+import com.example.demo.dto.ProductSummary;
+import com.example.demo.dto.ResourceVersion;
+import com.example.demo.dto.Suggestion;
+import com.example.demo.exception.BadRequestException;
 import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.repository.CategoryRepository;
 import com.example.demo.repository.ProductRepository;
@@ -19,29 +42,159 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
+    private final ProductAttributeIndex productAttributeIndex;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final SpecificationParser specificationParser;
+    private final ProductIndexer productIndexer;
+    private final ProductCache productCache;
+    private final HotStockLedger hotStockLedger;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final CoPurchaseIndex coPurchaseIndex;
+    private final TrendingIndex trendingIndex;
+    private final ImageStorageService imageStorageService;
+    private final ImageDerivativeService imageDerivativeService;
 
-    public List<Product> getAll() {
-        return productRepository.findAll();
+    @Value("${app.catalog.page.default-size:24}")
+    private int defaultPageSize;
+
+    @Value("${app.catalog.page.max-size:100}")
+    private int maxPageSize;
+
+    @Transactional(readOnly = true)
+    public CursorPage<ProductSummary> list(String sortParam, String cursor, Integer limit) {
+        return page(null, sortParam, cursor, limit);
+    }
+
+    // Same pages as list(), over one category
+    @Transactional(readOnly = true)
+    public CursorPage<ProductSummary> byCategory(Long categoryId, String sortParam, String cursor, Integer limit) {
+        if (!categoryRepository.existsById(categoryId)) {
+            throw new ResourceNotFoundException("Category not found");
+        }
+        return page(categoryId, sortParam, cursor, limit);
+    }
+
+    private CursorPage<ProductSummary> page(Long categoryId, String sortParam, String cursor, Integer limit) {
+        ProductSort sort = resolveSort(sortParam);
+        int size = resolvePageSize(limit);
+        Cursor after = cursor == null || cursor.isBlank() ? null : decodeCursor(sort, cursor);
+
+        // One extra row tells whether another page exists without a count query
+        List<ProductSummary> rows = productRepository.findSummaryPage(sort, categoryId,
+                after != null ? after.value() : null, after != null ? after.id() : null, size + 1);
+        boolean hasNext = rows.size() > size;
+        List<ProductSummary> content = hasNext ? rows.subList(0, size) : rows;
+        return CursorPage.<ProductSummary>builder()
+                .data(content)
+                .nextCursor(hasNext ? encodeCursor(sort, content.get(content.size() - 1)) : null)
+                .hasNext(hasNext)
+                .limit(size)
+                .build();
     }
 
     public Product getById(Long id) {
-        return productRepository.findById(id)
+        return productCache.get(id);
+    }
+
+    public List<ProductSummary> search(String keyword, Integer limit) {
+        List<Long> rankedIds = productSearchIndex.search(keyword, resolvePageSize(limit));
+        return loadInOrder(rankedIds);
+    }
+
+    // First page of a sort at the default size, as served to anonymous landing pages
+    public CatalogSnapshotService.Encoded firstPage(String sortParam) {
+        ProductSort sort = resolveSort(sortParam);
+        return catalogSnapshotService.get(CatalogSnapshotService.productsKey(sort.name()),
+                () -> list(sort.name(), null, null));
+    }
+
+    // First page of a category, likewise
+    public CatalogSnapshotService.Encoded firstCategoryPage(Long categoryId, String sortParam) {
+        ProductSort sort = resolveSort(sortParam);
+        return catalogSnapshotService.get(CatalogSnapshotService.categoryKey(categoryId, sort.name()),
+                () -> byCategory(categoryId, sort.name(), null, null));
+    }
+
+    public ResourceVersion version(Long id) {
+        ProductRepository.Timestamps timestamps = productRepository.findTimestampsById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        return ResourceVersion.of("p" + id, timestamps.getUpdatedAt(), timestamps.getCategoryUpdatedAt());
+    }
+
+    // Co-purchase neighbors, strongest first
+    public List<ProductSummary> related(Long id, Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("limit must be at least 1");
+        }
+        List<Long> ids = coPurchaseIndex.related(id, limit != null ? Math.min(limit, coPurchaseIndex.capacity()) : 8);
+        if (ids.isEmpty() && !productRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Product not found");
+        }
+        return loadInOrder(ids);
     }
 
-    public List<Product> search(String keyword) {
-        return productRepository.findByNameContainingIgnoreCase(keyword);
+    public List<ProductSummary> trending(String board, Long categoryId, Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("limit must be at least 1");
+        }
+        return trendingIndex.top(TrendingIndex.Board.from(board), categoryId,
+                limit != null ? Math.min(limit, trendingIndex.size()) : 10);
     }
 
-    public List<Product> byCategory(Long categoryId) {
-        Category category = categoryRepository.findById(categoryId)
-                .orElseThrow(() -> new ResourceNotFoundException("Category not found"));
-        return productRepository.findByCategory(category);
+    public void recordView(Long id, String viewer) {
+        trendingIndex.recordView(id, viewer);
+    }
+
+    public List<Suggestion> suggest(String prefix, Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("limit must be at least 1");
+        }
+        return productSuggestIndex.suggest(prefix, limit != null ? limit : Integer.MAX_VALUE);
+    }
+
+    public FacetedPage<ProductSummary> filter(ProductFilterRequest filter) {
+        int size = resolvePageSize(filter.getSize());
+        int page = Math.max(filter.getPage(), 0);
+        ProductFacetIndex.Result result = productFacetIndex.filter(filter, page * size, size);
+        return FacetedPage.<ProductSummary>builder()
+                .data(loadInOrder(result.productIds()))
+                .total(result.total())
+                .page(page)
+                .size(size)
+                .facets(result.facets())
+                .build();
+    }
+
+    public Map<String, List<FacetCount>> attributes() {
+        return productAttributeIndex.attributes();
+    }
+
+    // Every query parameter other than page/size is an attribute constraint, e.g. ?ram=16gb&color=red&color=blue
+    public FacetedPage<ProductSummary> filterByAttributes(MultiValueMap<String, String> params) {
+        int size = resolvePageSize(params.containsKey("size") ? parseInt(params.getFirst("size"), "size") : null);
+        int page = params.containsKey("page") ? Math.max(parseInt(params.getFirst("page"), "page"), 0) : 0;
+        Map<String, List<String>> constraints = new LinkedHashMap<>();
+        params.forEach((name, values) -> {
+            if (!Set.of("page", "size").contains(name)) {
+                constraints.put(name, values);
+            }
+        });
+        ProductAttributeIndex.Result result = productAttributeIndex.filter(constraints, page * size, size);
+        return FacetedPage.<ProductSummary>builder()
+                .data(loadInOrder(result.productIds()))
+                .total(result.total())
+                .page(page)
+                .size(size)
+                .facets(result.facets())
+                .build();
     }
 
     public Product create(ProductRequest request) {
         Category category = categoryRepository.findById(request.getCategoryId())
                 .orElseThrow(() -> new ResourceNotFoundException("Category not found"));
+        specificationParser.parse(request.getSpecifications());
         Product product = Product.builder()
                 .name(request.getName())
                 .description(request.getDescription())
@@ -49,35 +202,135 @@ public class ProductService {
             .salePrice(request.getSalePrice() != null ? request.getSalePrice() : productSaleDefault())
                 .category(category)
             .stock(request.getStock() != null ? request.getStock() : 0)
-                .images(request.getImages() != null ? request.getImages() : List.of())
+                .hotSku(Boolean.TRUE.equals(request.getHotSku()))
+                .images(request.getImages() != null ? imageStorageService.normalize(request.getImages()) : List.of())
                 .specifications(request.getSpecifications())
                 .build();
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        productIndexer.indexed(saved);
+        imageDerivativeService.generateAsync(saved.getImages());
+        return saved;
     }
 
     public Product update(Long id, ProductRequest request) {
-        Product product = getById(id);
+        // Hand back the ledger's lease first, so the stock adjusted below is the true on-hand count
+        hotStockLedger.settle(id);
+        Product product = load(id);
         Category category = categoryRepository.findById(request.getCategoryId())
                 .orElseThrow(() -> new ResourceNotFoundException("Category not found"));
+        specificationParser.parse(request.getSpecifications());
+        // Stock is not part of the entity write. An edit is applied as the difference from the count the client
+        // started from, so units sold while the form was open are not put back; without that count it is ignored
+        if (request.getStock() != null && request.getOriginalStock() != null
+                && !request.getStock().equals(request.getOriginalStock())) {
+            int delta = request.getStock() - request.getOriginalStock();
+            productRepository.adjustStock(id, delta);
+            product.setStock(Math.max(product.getStock() + delta, 0));
+        }
         product.setName(request.getName());
         product.setDescription(request.getDescription());
         product.setPrice(request.getPrice());
         product.setSalePrice(request.getSalePrice() != null ? request.getSalePrice() : productSaleDefault());
         product.setCategory(category);
-        product.setStock(request.getStock() != null ? request.getStock() : product.getStock());
+        if (request.getHotSku() != null) {
+            product.setHotSku(request.getHotSku());
+        }
         if (request.getImages() != null) {
-            product.setImages(request.getImages());
+            product.setImages(imageStorageService.normalize(request.getImages()));
         }
         product.setSpecifications(request.getSpecifications());
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        productIndexer.indexed(saved);
+        if (request.getImages() != null) {
+            imageDerivativeService.generateAsync(saved.getImages());
+        }
+        return saved;
     }
 
     public void delete(Long id) {
-        Product product = getById(id);
+        Product product = load(id);
         productRepository.delete(product);
+        productIndexer.removed(id);
+    }
+
+    // Writes always start from a fresh managed copy, never from the shared cached instance
+    private Product load(Long id) {
+        return productRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
     }
 
     private java.math.BigDecimal productSaleDefault() {
         return java.math.BigDecimal.ZERO;
     }
+
+    private List<ProductSummary> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ProductSummary> byId = productRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(ProductSummary::id, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException(name + " must be a number");
+        }
+    }
+
+    private ProductSort resolveSort(String sortParam) {
+        try {
+            return ProductSort.from(sortParam);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Unsupported sort: " + sortParam);
+        }
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new BadRequestException("limit must be at least 1");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    private record Cursor(Object value, Long id) {
+    }
+
+    // Cursor format: base64url("SORT|value|id"), bound to the sort it was issued for.
+    // id breaks ties so the keyset order is total and pages never overlap or skip rows.
+    private String encodeCursor(ProductSort sort, ProductSummary last) {
+        String value = switch (sort) {
+            case NEWEST -> last.createdAt().toString();
+            case PRICE_ASC, PRICE_DESC -> last.price().toPlainString();
+            case RATING -> String.valueOf(last.ratingAverage() != null ? last.ratingAverage() : 0.0);
+        };
+        String raw = sort.name() + "|" + value + "|" + last.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Cursor decodeCursor(ProductSort sort, String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3 || !parts[0].equals(sort.name())) {
+                throw new BadRequestException("Cursor does not match requested sort");
+            }
+            Object value = switch (sort) {
+                case NEWEST -> Instant.parse(parts[1]);
+                case PRICE_ASC, PRICE_DESC -> new BigDecimal(parts[1]);
+                case RATING -> Double.valueOf(parts[1]);
+            };
+            return new Cursor(value, Long.valueOf(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
 }
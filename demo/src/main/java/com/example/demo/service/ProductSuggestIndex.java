@@ -0,0 +1,346 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.domain.ImageVariant;
+import com.example.demo.domain.Product;
+import com.example.demo.dto.Suggestion;
+
+/*
+ * Character trie over normalized product and category names. Every word start of a name is a key
+ * ("apple iphone 15" is also reachable as "iphone 15" and "15"), and every node keeps its top-k entries by
+ * popularity, so a lookup is a walk down the prefix plus a copy of at most k precomputed results.
+ * Inserts only offer the new entry along its paths; removals recompute the affected nodes bottom-up from
+ * their children's top lists, which always contain the node's true top-k.
+ */
+@Service
+public class ProductSuggestIndex implements ProductIndex {
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    private static final int MAX_KEY_LENGTH = 48;
+    private static final Comparator<Entry> BY_SCORE = Comparator.comparingDouble(Entry::score).reversed()
+            .thenComparing(entry -> entry.suggestion().text());
+
+    private final int topK;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Indexed> entries = new HashMap<>();
+    private final Map<Long, Long> productCategories = new HashMap<>();
+    private final Map<Long, Integer> categoryProductCounts = new HashMap<>();
+    private final Map<Long, String> categoryNames = new HashMap<>();
+    private Node root = new Node();
+
+    private record Entry(String key, Suggestion suggestion, double score) {
+    }
+
+    private record Indexed(Entry entry, List<String> keys) {
+    }
+
+    private static final class Node {
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        private Entry[] terminals = NO_ENTRIES;
+        private Entry[] top = NO_ENTRIES;
+
+        private Node child(char label) {
+            int slot = Arrays.binarySearch(labels, label);
+            return slot >= 0 ? children[slot] : null;
+        }
+
+        private Node childOrCreate(char label) {
+            int slot = Arrays.binarySearch(labels, label);
+            if (slot >= 0) {
+                return children[slot];
+            }
+            int insertAt = -slot - 1;
+            Node child = new Node();
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newLabels[insertAt] = label;
+            newChildren[insertAt] = child;
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        private void removeChild(char label) {
+            int slot = Arrays.binarySearch(labels, label);
+            if (slot < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, slot);
+            System.arraycopy(children, 0, newChildren, 0, slot);
+            System.arraycopy(labels, slot + 1, newLabels, slot, labels.length - slot - 1);
+            System.arraycopy(children, slot + 1, newChildren, slot, children.length - slot - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        private boolean isEmpty() {
+            return terminals.length == 0 && children.length == 0;
+        }
+    }
+
+    public ProductSuggestIndex(@Value("${app.catalog.suggest.top-k:10}") int topK) {
+        this.topK = topK;
+    }
+
+    @Override
+    public void index(Product product) {
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        String categoryName = product.getCategory() != null ? product.getCategory().getName() : null;
+        Entry entry = new Entry(productKey(product.getId()),
+                new Suggestion("product", product.getId(), product.getName(),
+                        ImageVariant.THUMBNAIL.urlFor(product.getPrimaryImage())),
+                productScore(product));
+
+        lock.writeLock().lock();
+        try {
+            unindex(entry.key());
+            insert(entry, keysOf(product.getName()));
+            Long previousCategory = categoryId != null
+                    ? productCategories.put(product.getId(), categoryId)
+                    : productCategories.remove(product.getId());
+            if (categoryId != null && categoryName != null) {
+                categoryNames.put(categoryId, categoryName);
+            }
+            if (previousCategory != null) {
+                adjustCategory(previousCategory, -1);
+            }
+            if (categoryId != null) {
+                adjustCategory(categoryId, 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            unindex(productKey(productId));
+            Long previousCategory = productCategories.remove(productId);
+            if (previousCategory != null) {
+                adjustCategory(previousCategory, -1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root = new Node();
+            entries.clear();
+            productCategories.clear();
+            categoryProductCounts.clear();
+            categoryNames.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = keyOf(TextTokenizer.tokenize(prefix));
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            Entry[] top = node.top;
+            int count = Math.min(limit, top.length);
+            List<Suggestion> suggestions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                suggestions.add(top[i].suggestion());
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ratings are the only popularity signal stored on the product; a log keeps best sellers from
+    // drowning everything else
+    private double productScore(Product product) {
+        long ratingCount = product.getRatingCount() != null ? product.getRatingCount() : 0;
+        double ratingAverage = product.getRatingAverage() != null ? product.getRatingAverage() : 0.0;
+        boolean inStock = product.getStock() != null && product.getStock() > 0;
+        return Math.log1p(ratingCount) * (1 + ratingAverage / 5) + (inStock ? 1 : 0);
+    }
+
+    private void adjustCategory(Long categoryId, int delta) {
+        int count = categoryProductCounts.merge(categoryId, delta, Integer::sum);
+        String key = categoryKey(categoryId);
+        unindex(key);
+        if (count <= 0) {
+            categoryProductCounts.remove(categoryId);
+            categoryNames.remove(categoryId);
+            return;
+        }
+        String name = categoryNames.get(categoryId);
+        if (name != null) {
+            insert(new Entry(key, new Suggestion("category", categoryId, name, null), Math.log1p(count)), keysOf(name));
+        }
+    }
+
+    private void insert(Entry entry, List<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        for (String key : keys) {
+            Node[] path = pathOf(key, true);
+            Node leaf = path[path.length - 1];
+            leaf.terminals = append(leaf.terminals, entry);
+            for (Node node : path) {
+                offer(node, entry);
+            }
+        }
+        entries.put(entry.key(), new Indexed(entry, keys));
+    }
+
+    private void unindex(String entryKey) {
+        Indexed previous = entries.remove(entryKey);
+        if (previous == null) {
+            return;
+        }
+        Entry entry = previous.entry();
+        for (String key : previous.keys()) {
+            Node[] path = pathOf(key, false);
+            Node leaf = path[path.length - 1];
+            if (leaf != null) {
+                leaf.terminals = without(leaf.terminals, entry);
+            }
+        }
+        for (String key : previous.keys()) {
+            Node[] path = pathOf(key, false);
+            for (int depth = path.length - 1; depth >= 0; depth--) {
+                Node node = path[depth];
+                if (node == null) {
+                    continue;
+                }
+                if (contains(node.top, entry)) {
+                    refresh(node);
+                }
+                if (depth > 0 && node.isEmpty() && path[depth - 1] != null) {
+                    path[depth - 1].removeChild(key.charAt(depth - 1));
+                }
+            }
+        }
+    }
+
+    // path[0] is the root, path[i] the node for the first i characters; missing nodes stay null unless created
+    private Node[] pathOf(String key, boolean create) {
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length() && path[i] != null; i++) {
+            path[i + 1] = create ? path[i].childOrCreate(key.charAt(i)) : path[i].child(key.charAt(i));
+        }
+        return path;
+    }
+
+    private void offer(Node node, Entry entry) {
+        Entry[] top = node.top;
+        if (contains(top, entry)) {
+            return;
+        }
+        if (top.length == topK && BY_SCORE.compare(entry, top[topK - 1]) >= 0) {
+            return;
+        }
+        int insertAt = 0;
+        while (insertAt < top.length && BY_SCORE.compare(top[insertAt], entry) <= 0) {
+            insertAt++;
+        }
+        int size = Math.min(top.length + 1, topK);
+        Entry[] updated = new Entry[size];
+        System.arraycopy(top, 0, updated, 0, insertAt);
+        updated[insertAt] = entry;
+        System.arraycopy(top, insertAt, updated, insertAt + 1, size - insertAt - 1);
+        node.top = updated;
+    }
+
+    private void refresh(Node node) {
+        Set<Entry> candidates = new LinkedHashSet<>(Arrays.asList(node.terminals));
+        for (Node child : node.children) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        node.top = candidates.stream()
+                .sorted(BY_SCORE)
+                .limit(topK)
+                .toArray(Entry[]::new);
+    }
+
+    private boolean contains(Entry[] entries, Entry entry) {
+        for (Entry candidate : entries) {
+            if (candidate == entry) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Entry[] append(Entry[] entries, Entry entry) {
+        if (contains(entries, entry)) {
+            return entries;
+        }
+        Entry[] updated = Arrays.copyOf(entries, entries.length + 1);
+        updated[entries.length] = entry;
+        return updated;
+    }
+
+    private Entry[] without(Entry[] entries, Entry entry) {
+        return Arrays.stream(entries)
+                .filter(candidate -> candidate != entry)
+                .toArray(Entry[]::new);
+    }
+
+    private List<String> keysOf(String text) {
+        List<String> tokens = TextTokenizer.tokenize(text);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            keys.add(keyOf(tokens.subList(i, tokens.size())));
+        }
+        return List.copyOf(keys);
+    }
+
+    private String keyOf(List<String> tokens) {
+        String key = String.join(" ", tokens);
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    private String productKey(Long productId) {
+        return "p" + productId;
+    }
+
+    private String categoryKey(Long categoryId) {
+        return "c" + categoryId;
+    }
+}
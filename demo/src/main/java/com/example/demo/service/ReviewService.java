@@ -8,9 +8,11 @@ import org.springframework.transaction.annotation.Transactional;
 import com.example.demo.domain.Product;
 import com.example.demo.domain.Review;
 import com.example.demo.domain.User;
+import com.example.demo.dto.ResourceVersion;
 import com.example.demo.dto.ReviewRequest;
 import com.example.demo.exception.BadRequestException;
 import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.repository.CollectionVersion;
 import com.example.demo.repository.ProductRepository;
 import com.example.demo.repository.ReviewRepository;
 
@@ -22,18 +24,26 @@ public class ReviewService {
 
     private final ReviewRepository reviewRepository;
     private final ProductRepository productRepository;
+    private final ProductIndexer productIndexer;
+    private final ProductCache productCache;
 
     @Transactional(readOnly = true)
     public List<Review> forProduct(Long productId) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        Product product = productCache.get(productId);
         return reviewRepository.findByProduct(product);
     }
 
+    public ResourceVersion version(Long productId) {
+        CollectionVersion version = reviewRepository.findVersionByProductId(productId);
+        if (version.getCount() == 0 && !productRepository.existsById(productId)) {
+            throw new ResourceNotFoundException("Product not found");
+        }
+        return ResourceVersion.of("r" + productId + "-" + version.getCount(), version.getLastModified());
+    }
+
     @Transactional
     public Review addReview(User user, ReviewRequest request) {
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        Product product = productCache.get(request.getProductId());
         reviewRepository.findByProductAndUser(product, user).ifPresent(existing -> {
             throw new BadRequestException("You already reviewed this product");
         });
@@ -71,6 +81,6 @@ public class ReviewService {
             product.setRatingAverage(avg);
             product.setRatingCount((long) reviews.size());
         }
-        productRepository.save(product);
+        productIndexer.indexed(productRepository.save(product));
     }
 }
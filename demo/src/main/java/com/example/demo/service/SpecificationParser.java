@@ -0,0 +1,76 @@
+package com.example.demo.service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.stereotype.Service;
+
+import com.example.demo.exception.BadRequestException;
+
+import lombok.RequiredArgsConstructor;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+// Turns Product.specifications ({"RAM": "16GB", "colors": ["red", "blue"], "screen": {"size": "6.1in"}})
+// into normalized attribute -> values pairs; nested objects flatten to dotted keys ("screen.size").
+@Service
+@RequiredArgsConstructor
+public class SpecificationParser {
+
+    private final ObjectMapper objectMapper;
+
+    public Map<String, Set<String>> parse(String specifications) {
+        if (specifications == null || specifications.isBlank()) {
+            return Map.of();
+        }
+        Object root;
+        try {
+            root = objectMapper.readValue(specifications, Object.class);
+        } catch (JacksonException ex) {
+            throw new BadRequestException("specifications must be a JSON object");
+        }
+        if (!(root instanceof Map<?, ?> map)) {
+            throw new BadRequestException("specifications must be a JSON object");
+        }
+        Map<String, Set<String>> attributes = new LinkedHashMap<>();
+        flatten("", map, attributes);
+        return attributes;
+    }
+
+    public static String normalizeKey(String key) {
+        return normalizeValue(key);
+    }
+
+    public static String normalizeValue(String value) {
+        return TextTokenizer.normalize(value).trim().replaceAll("\\s+", " ");
+    }
+
+    private void flatten(String prefix, Map<?, ?> map, Map<String, Set<String>> attributes) {
+        map.forEach((name, value) -> {
+            String key = normalizeKey(prefix + name);
+            if (key.isEmpty()) {
+                return;
+            }
+            if (value instanceof Map<?, ?> nested) {
+                flatten(key + ".", nested, attributes);
+            } else if (value instanceof Collection<?> values) {
+                values.forEach(item -> addValue(attributes, key, item));
+            } else {
+                addValue(attributes, key, value);
+            }
+        });
+    }
+
+    private void addValue(Map<String, Set<String>> attributes, String key, Object value) {
+        if (value == null || value instanceof Map<?, ?> || value instanceof Collection<?>) {
+            return;
+        }
+        String normalized = normalizeValue(String.valueOf(value));
+        if (!normalized.isEmpty()) {
+            attributes.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(normalized);
+        }
+    }
+}
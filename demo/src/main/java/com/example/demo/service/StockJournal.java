@@ -0,0 +1,255 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/*
+ * Append-only local log of hot-SKU sales, one "orderId productId quantity" line per ledger line, forced to disk
+ * before the order commits. Writes happen under the monitor, the force outside it with group commit: an appender
+ * whose lines are not yet durable forces everything written so far, and appenders that wrote while it was
+ * forcing usually find their lines covered when they get the force lock. Segments rotate on every flush; a
+ * segment is deleted once each order journaled in it has been written back to the database or rolled back. A
+ * torn last line (crash mid-append) is ignored: its order never got past beforeCommit.
+ */
+final class StockJournal {
+
+    private static final String PREFIX = "stock-";
+    private static final String SUFFIX = ".journal";
+    private static final String NODE_ID = "node-id";
+
+    record Entry(long orderId, long productId, int quantity) {
+    }
+
+    private final Path dir;
+    private final Map<Long, AtomicInteger> outstanding = new ConcurrentHashMap<>();
+    // Taken before the monitor, never while holding it
+    private final ReentrantLock forceLock = new ReentrantLock();
+    private FileChannel channel;
+    private long segment;
+    // Appends written to the channel, and how many of them are known to be on disk
+    private long written;
+    private volatile long forced;
+
+    StockJournal(Path dir) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot create stock journal directory " + dir, ex);
+        }
+    }
+
+    // Identifies the leases this journal covers; created on first use and kept with the segments, so whoever
+    // recovers the journal also recovers the matching leases
+    String nodeId() {
+        Path file = dir.resolve(NODE_ID);
+        try {
+            if (Files.exists(file)) {
+                return Files.readString(file, StandardCharsets.US_ASCII).trim();
+            }
+            String id = UUID.randomUUID().toString();
+            Files.writeString(file, id + "\n", StandardCharsets.US_ASCII);
+            return id;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read stock journal node id in " + dir, ex);
+        }
+    }
+
+    // Everything left over from the previous run, oldest segment first
+    List<Entry> recover() {
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : segments()) {
+            try {
+                String content = Files.readString(file, StandardCharsets.US_ASCII);
+                int end = content.lastIndexOf('\n');
+                if (end < 0) {
+                    continue;
+                }
+                for (String line : content.substring(0, end).split("\n")) {
+                    String[] fields = line.split(" ");
+                    if (fields.length == 3) {
+                        entries.add(new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                                Integer.parseInt(fields[2])));
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot read stock journal " + file, ex);
+            }
+        }
+        return entries;
+    }
+
+    // Drops all segments (after recovery settled them) and starts a fresh one
+    synchronized void reset() {
+        for (Path file : segments()) {
+            delete(file);
+        }
+        outstanding.clear();
+        segment = 0;
+        open();
+    }
+
+    // Returns once the lines are on disk, with the segment holding them, to be handed back to release() once the
+    // order is settled
+    long append(long orderId, Map<Long, Integer> quantities) {
+        StringBuilder lines = new StringBuilder();
+        quantities.forEach((productId, quantity) ->
+                lines.append(orderId).append(' ').append(productId).append(' ').append(quantity).append('\n'));
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.US_ASCII));
+        long ticket;
+        long segmentId;
+        synchronized (this) {
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot append to stock journal", ex);
+            }
+            ticket = ++written;
+            segmentId = segment;
+            outstanding.computeIfAbsent(segmentId, s -> new AtomicInteger()).incrementAndGet();
+        }
+        try {
+            awaitForced(ticket);
+        } catch (RuntimeException ex) {
+            // The order rolls back; its lines stay in the file but no longer keep the segment alive
+            release(segmentId);
+            throw ex;
+        }
+        return segmentId;
+    }
+
+    // Finishes the current segment once it holds anything; its lines are forced before the channel closes
+    void rotate() {
+        forceLock.lock();
+        try {
+            synchronized (this) {
+                AtomicInteger current = outstanding.get(segment);
+                if (current == null) {
+                    return;
+                }
+                long previous = segment;
+                force(channel, written);
+                close();
+                open();
+                if (current.get() == 0) {
+                    discard(previous);
+                }
+            }
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    void release(long segmentId) {
+        AtomicInteger count = outstanding.get(segmentId);
+        if (count != null && count.decrementAndGet() == 0) {
+            synchronized (this) {
+                if (segmentId != segment) {
+                    discard(segmentId);
+                }
+            }
+        }
+    }
+
+    synchronized void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot close stock journal", ex);
+        }
+    }
+
+    private void awaitForced(long ticket) {
+        if (forced >= ticket) {
+            return;
+        }
+        forceLock.lock();
+        try {
+            if (forced < ticket) {
+                // Covers this append and every one written while the previous force was running; appenders keep
+                // writing meanwhile, rotate() waits for the force lock
+                FileChannel target;
+                long upTo;
+                synchronized (this) {
+                    target = channel;
+                    upTo = written;
+                }
+                force(target, upTo);
+            }
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    // Caller holds the force lock
+    private void force(FileChannel target, long upTo) {
+        if (forced >= upTo) {
+            return;
+        }
+        try {
+            target.force(false);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot force stock journal to disk", ex);
+        }
+        forced = upTo;
+    }
+
+    private void open() {
+        segment++;
+        try {
+            channel = FileChannel.open(file(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot open stock journal", ex);
+        }
+    }
+
+    private void discard(long segmentId) {
+        AtomicInteger count = outstanding.get(segmentId);
+        if (count != null && count.get() == 0) {
+            outstanding.remove(segmentId);
+            delete(file(segmentId));
+        }
+    }
+
+    private Path file(long segmentId) {
+        return dir.resolve(PREFIX + String.format("%012d", segmentId) + SUFFIX);
+    }
+
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot list stock journal " + dir, ex);
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot delete stock journal " + file, ex);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Hierarchical hashed timing wheel (Varghese & Lauck). Level l has 64 slots of 64^l ticks each; a timer goes to
+ * the lowest level whose higher tick digits it shares with the current tick, so scheduling and cancelling are
+ * O(1) list operations whatever the number of timers. When the current tick rolls into a slot of a higher level,
+ * that slot's timers are cascaded down; they reach level 0 exactly on their deadline tick. Eleven levels of six
+ * bits cover every long tick, so nothing ever overflows the wheel.
+ *
+ * Guarded by its own monitor: callers schedule and cancel from any thread while a single ticker advances time.
+ */
+final class TimingWheel<K> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = (Long.SIZE + BITS - 1) / BITS;
+
+    private final long tickMillis;
+    private final long originMillis;
+    private final Timer<K>[][] slots;
+    private final Map<K, Timer<K>> timers = new HashMap<>();
+    private long currentTick;
+
+    private static final class Timer<K> {
+        private final K key;
+        private final long deadline;
+        private Timer<K> prev;
+        private Timer<K> next;
+        private int level;
+        private int slot;
+
+        private Timer(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, long originMillis) {
+        this.tickMillis = tickMillis;
+        this.originMillis = originMillis;
+        this.slots = new Timer[LEVELS][SLOTS];
+    }
+
+    // Replaces any timer already set for the key; deadlines in the past fire on the next tick
+    synchronized void schedule(K key, long deadlineMillis) {
+        Timer<K> previous = timers.remove(key);
+        if (previous != null) {
+            unlink(previous);
+        }
+        long deadline = Math.max(currentTick + 1, Math.ceilDiv(deadlineMillis - originMillis, tickMillis));
+        Timer<K> timer = new Timer<>(key, deadline);
+        timers.put(key, timer);
+        link(timer);
+    }
+
+    synchronized boolean cancel(K key) {
+        Timer<K> timer = timers.remove(key);
+        if (timer == null) {
+            return false;
+        }
+        unlink(timer);
+        return true;
+    }
+
+    synchronized int size() {
+        return timers.size();
+    }
+
+    // Moves the wheel up to the given time and returns every key whose deadline has passed, tick by tick
+    synchronized List<K> advance(long nowMillis) {
+        List<K> expired = new ArrayList<>();
+        long target = Math.floorDiv(nowMillis - originMillis, tickMillis);
+        while (currentTick < target) {
+            currentTick++;
+            // Highest level first, so a timer can drop through several levels within one tick
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (BITS * level)) & MASK));
+                }
+            }
+            int slot = (int) (currentTick & MASK);
+            for (Timer<K> timer = slots[0][slot]; timer != null; timer = timer.next) {
+                timers.remove(timer.key);
+                expired.add(timer.key);
+            }
+            slots[0][slot] = null;
+        }
+        return expired;
+    }
+
+    private void cascade(int level, int slot) {
+        Timer<K> timer = slots[level][slot];
+        slots[level][slot] = null;
+        while (timer != null) {
+            Timer<K> next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            link(timer);
+            timer = next;
+        }
+    }
+
+    private void link(Timer<K> timer) {
+        int level = 0;
+        while (level < LEVELS - 1
+                && (timer.deadline >>> (BITS * (level + 1))) != (currentTick >>> (BITS * (level + 1)))) {
+            level++;
+        }
+        timer.level = level;
+        timer.slot = (int) ((timer.deadline >>> (BITS * level)) & MASK);
+        Timer<K> head = slots[level][timer.slot];
+        timer.next = head;
+        if (head != null) {
+            head.prev = timer;
+        }
+        slots[level][timer.slot] = timer;
+    }
+
+    private void unlink(Timer<K> timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            slots[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.demo.service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.domain.Product;
+import com.example.demo.dto.ProductSummary;
+import com.example.demo.exception.BadRequestException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Leaderboards over exponentially decayed activity, served entirely from memory.
+ *
+ * Scores use forward decay: an event at time t adds w * e^((t - base) / tau) instead of decaying every
+ * score as time passes. All scores share the same implicit factor e^(-(now - base) / tau), so ranking
+ * needs no clock and a score only ever grows, which lets each bounded top-N set be maintained by
+ * offering new scores alone. When the exponent gets large, everything is rescaled to a new base.
+ */
+@Slf4j
+@Service
+public class TrendingIndex implements ProductIndex {
+
+    private static final String SEED_QUERY = """
+            select oi.product_id, oi.quantity, o.created_at
+            from order_items oi
+            join orders o on o.id = oi.order_id
+            where o.order_status <> 'CANCELLED' and o.created_at >= ?""";
+
+    private static final Long ALL_CATEGORIES = 0L;
+    private static final double VIEW_WEIGHT = 0.1;
+    private static final long VIEW_INTERVAL_MILLIS = Duration.ofHours(1).toMillis();
+    private static final double REBASE_EXPONENT = 50;
+    private static final double NEGLIGIBLE_SCORE = 1e-6;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int size;
+    private final Map<Board, DecayedScores> boards = new EnumMap<>(Board.class);
+    private final Map<Long, ProductSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<Long, Long> categories = new ConcurrentHashMap<>();
+    // Viewer/product pairs already counted in this view interval and the one before
+    private volatile Set<String> recentViews = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> earlierViews = ConcurrentHashMap.newKeySet();
+    private volatile long viewsRotatedAt = System.currentTimeMillis();
+
+    public enum Board {
+        // Recent orders and views, short half-life
+        TRENDING,
+        // Units sold, roughly "this week"
+        BEST_SELLERS;
+
+        public static Board from(String value) {
+            if (value == null || value.isBlank()) {
+                return TRENDING;
+            }
+            try {
+                return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw new BadRequestException("Unknown leaderboard: " + value);
+            }
+        }
+    }
+
+    public TrendingIndex(JdbcTemplate jdbcTemplate,
+                         @Value("${app.leaderboards.size:50}") int size,
+                         @Value("${app.leaderboards.trending-half-life:6h}") Duration trendingHalfLife,
+                         @Value("${app.leaderboards.best-sellers-half-life:3d}") Duration bestSellersHalfLife) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.size = size;
+        boards.put(Board.TRENDING, new DecayedScores(trendingHalfLife));
+        boards.put(Board.BEST_SELLERS, new DecayedScores(bestSellersHalfLife));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<ProductSummary> top(Board board, Long categoryId, int limit) {
+        List<ProductSummary> top = new ArrayList<>(limit);
+        for (Long productId : boards.get(board).top(categoryId != null ? categoryId : ALL_CATEGORIES)) {
+            ProductSummary summary = summaries.get(productId);
+            if (summary != null) {
+                top.add(summary);
+                if (top.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return top;
+    }
+
+    // Quantities per product id; counted once the order commits
+    public void recordOrder(Map<Long, Integer> quantities) {
+        long now = System.currentTimeMillis();
+        AfterCommit.run(() -> quantities.forEach((productId, quantity) -> {
+            boards.get(Board.TRENDING).add(productId, quantity, now);
+            boards.get(Board.BEST_SELLERS).add(productId, quantity, now);
+        }));
+    }
+
+    // At most one view per viewer and product counts per interval, so reloading a page cannot push it up
+    public void recordView(Long productId, String viewer) {
+        long now = System.currentTimeMillis();
+        if (now - viewsRotatedAt >= VIEW_INTERVAL_MILLIS) {
+            rotateViews(now);
+        }
+        String key = viewer + '\n' + productId;
+        if (earlierViews.contains(key) || !recentViews.add(key)) {
+            return;
+        }
+        boards.get(Board.TRENDING).add(productId, VIEW_WEIGHT, now);
+    }
+
+    // Seeds the boards with orders recent enough to still carry weight; older ones have decayed to nothing
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        long started = System.currentTimeMillis();
+        Duration window = boards.values().stream()
+                .map(DecayedScores::window)
+                .max(Comparator.naturalOrder())
+                .orElseThrow();
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        int[] events = {0};
+        jdbcTemplate.query(SEED_QUERY, rs -> {
+            long productId = rs.getLong(1);
+            int quantity = rs.getInt(2);
+            long at = rs.getTimestamp(3, utc).getTime();
+            boards.values().forEach(board -> board.add(productId, quantity, at));
+            events[0]++;
+        }, Timestamp.from(Instant.ofEpochMilli(started).minus(window)));
+        log.info("Seeded leaderboards with {} order lines in {} ms", events[0], System.currentTimeMillis() - started);
+    }
+
+    @Override
+    public void index(Product product) {
+        summaries.put(product.getId(), ProductSummary.of(product));
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        Long previous = categoryId != null
+                ? categories.put(product.getId(), categoryId)
+                : categories.remove(product.getId());
+        if (!Objects.equals(previous, categoryId)) {
+            boards.values().forEach(board -> board.moveCategory(product.getId(), previous, categoryId));
+        }
+    }
+
+    @Override
+    public void remove(Long productId) {
+        summaries.remove(productId);
+        Long categoryId = categories.remove(productId);
+        boards.values().forEach(board -> board.remove(productId, categoryId));
+    }
+
+    // Catalog rebuild: scores come from orders and survive, category placement is re-offered as products are indexed
+    @Override
+    public void clear() {
+        summaries.clear();
+        categories.clear();
+        boards.values().forEach(DecayedScores::clearCategories);
+    }
+
+    // A pair seen in the previous interval still does not count, so memory holds at most two intervals of views
+    private synchronized void rotateViews(long now) {
+        if (now - viewsRotatedAt >= VIEW_INTERVAL_MILLIS) {
+            earlierViews = recentViews;
+            recentViews = ConcurrentHashMap.newKeySet();
+            viewsRotatedAt = now;
+        }
+    }
+
+    private final class DecayedScores {
+
+        private final double tauMillis;
+        private final Duration halfLife;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final ConcurrentHashMap<Long, DoubleAdder> scores = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Long, TopN> tops = new ConcurrentHashMap<>();
+        private volatile long baseMillis = System.currentTimeMillis();
+
+        private DecayedScores(Duration halfLife) {
+            this.halfLife = halfLife;
+            this.tauMillis = halfLife.toMillis() / Math.log(2);
+        }
+
+        // Beyond ~20 half-lives an event weighs less than a millionth of a fresh one
+        private Duration window() {
+            return halfLife.multipliedBy(20);
+        }
+
+        private void add(long productId, double weight, long atMillis) {
+            lock.readLock().lock();
+            try {
+                DoubleAdder adder = scores.computeIfAbsent(productId, id -> new DoubleAdder());
+                adder.add(weight * Math.exp((atMillis - baseMillis) / tauMillis));
+                double score = adder.sum();
+                topOf(ALL_CATEGORIES).offer(productId, score);
+                Long categoryId = categories.get(productId);
+                if (categoryId != null) {
+                    topOf(categoryId).offer(productId, score);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if ((atMillis - baseMillis) / tauMillis > REBASE_EXPONENT) {
+                rebase(atMillis);
+            }
+        }
+
+        private List<Long> top(Long categoryId) {
+            TopN top = tops.get(categoryId);
+            return top != null ? top.ids() : List.of();
+        }
+
+        private void moveCategory(Long productId, Long from, Long to) {
+            lock.readLock().lock();
+            try {
+                if (from != null) {
+                    TopN previous = tops.get(from);
+                    if (previous != null && previous.remove(productId)) {
+                        refill(previous, from);
+                    }
+                }
+                DoubleAdder adder = scores.get(productId);
+                if (to != null && adder != null) {
+                    topOf(to).offer(productId, adder.sum());
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void remove(Long productId, Long categoryId) {
+            lock.readLock().lock();
+            try {
+                scores.remove(productId);
+                TopN all = tops.get(ALL_CATEGORIES);
+                if (all != null && all.remove(productId)) {
+                    refill(all, ALL_CATEGORIES);
+                }
+                TopN category = categoryId != null ? tops.get(categoryId) : null;
+                if (category != null && category.remove(productId)) {
+                    refill(category, categoryId);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void clearCategories() {
+            tops.keySet().removeIf(categoryId -> !ALL_CATEGORIES.equals(categoryId));
+        }
+
+        // A removal can leave a slot that a product outside the set deserves; rare, so a full scan is fine
+        private void refill(TopN top, Long categoryId) {
+            scores.forEach((productId, adder) -> {
+                if (ALL_CATEGORIES.equals(categoryId) || categoryId.equals(categories.get(productId))) {
+                    top.offer(productId, adder.sum());
+                }
+            });
+        }
+
+        private void rebase(long nowMillis) {
+            lock.writeLock().lock();
+            try {
+                double factor = Math.exp(-(nowMillis - baseMillis) / tauMillis);
+                scores.entrySet().removeIf(entry -> {
+                    DoubleAdder adder = entry.getValue();
+                    double rescaled = adder.sumThenReset() * factor;
+                    adder.add(rescaled);
+                    return rescaled < NEGLIGIBLE_SCORE;
+                });
+                tops.values().forEach(top -> top.rescale(factor, NEGLIGIBLE_SCORE));
+                baseMillis = nowMillis;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private TopN topOf(Long categoryId) {
+            return tops.computeIfAbsent(categoryId, id -> new TopN(size));
+        }
+    }
+
+    // Bounded set ordered by score; offers only ever raise a member's score
+    private static final class TopN {
+
+        private record Ranked(long productId, double score) {
+        }
+
+        private static final Comparator<Ranked> ORDER = Comparator.comparingDouble(Ranked::score).reversed()
+                .thenComparingLong(Ranked::productId);
+
+        private final int capacity;
+        private final TreeSet<Ranked> ranked = new TreeSet<>(ORDER);
+        private final Map<Long, Ranked> byId = new HashMap<>();
+
+        private TopN(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private synchronized void offer(long productId, double score) {
+            Ranked existing = byId.get(productId);
+            if (existing != null) {
+                if (existing.score() >= score) {
+                    return;
+                }
+                ranked.remove(existing);
+            } else if (ranked.size() >= capacity && ranked.last().score() >= score) {
+                return;
+            }
+            Ranked entry = new Ranked(productId, score);
+            ranked.add(entry);
+            byId.put(productId, entry);
+            if (ranked.size() > capacity) {
+                byId.remove(ranked.pollLast().productId());
+            }
+        }
+
+        private synchronized boolean remove(long productId) {
+            Ranked existing = byId.remove(productId);
+            return existing != null && ranked.remove(existing);
+        }
+
+        private synchronized void rescale(double factor, double negligible) {
+            List<Ranked> rescaled = new ArrayList<>(ranked.size());
+            for (Ranked entry : ranked) {
+                double score = entry.score() * factor;
+                if (score >= negligible) {
+                    rescaled.add(new Ranked(entry.productId(), score));
+                }
+            }
+            ranked.clear();
+            byId.clear();
+            rescaled.forEach(entry -> {
+                ranked.add(entry);
+                byId.put(entry.productId(), entry);
+            });
+        }
+
+        private synchronized List<Long> ids() {
+            return ranked.stream().map(Ranked::productId).toList();
+        }
+    }
+}
@@ -7,8 +7,6 @@ import com.example.demo.domain.Product;
 import com.example.demo.domain.User;
 import com.example.demo.domain.Wishlist;
 import com.example.demo.dto.WishlistRequest;
-import com.example.demo.exception.ResourceNotFoundException;
-import com.example.demo.repository.ProductRepository;
 import com.example.demo.repository.WishlistRepository;
 
 import lombok.RequiredArgsConstructor;
@@ -18,29 +16,39 @@ import lombok.RequiredArgsConstructor;
 public class WishlistService {
 
     private final WishlistRepository wishlistRepository;
-    private final ProductRepository productRepository;
+    private final ProductCache productCache;
 
+    // The first mutation is what materializes a user's wishlist row
     @Transactional
     public Wishlist add(User user, WishlistRequest request) {
         Wishlist wishlist = wishlistRepository.findByUser(user)
-                .orElseGet(() -> wishlistRepository.save(Wishlist.builder().user(user).build()));
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+                .orElseGet(() -> wishlistRepository.save(empty(user)));
+        Product product = productCache.get(request.getProductId());
+        // Products have identity equality, so dedupe by id before adding the cached instance
+        if (wishlist.getProducts().stream().anyMatch(p -> p.getId().equals(product.getId()))) {
+            return wishlist;
+        }
         wishlist.getProducts().add(product);
         return wishlistRepository.save(wishlist);
     }
 
     @Transactional
     public Wishlist remove(User user, Long productId) {
-        Wishlist wishlist = wishlistRepository.findByUser(user)
-                .orElseThrow(() -> new ResourceNotFoundException("Wishlist not found"));
+        Wishlist wishlist = wishlistRepository.findByUser(user).orElse(null);
+        if (wishlist == null) {
+            return empty(user);
+        }
         wishlist.getProducts().removeIf(p -> p.getId().equals(productId));
         return wishlistRepository.save(wishlist);
     }
 
-    @Transactional
+    // Never writes: users without a wishlist row see an unsaved empty one
+    @Transactional(readOnly = true)
     public Wishlist get(User user) {
-        return wishlistRepository.findByUser(user)
-                .orElseGet(() -> wishlistRepository.save(Wishlist.builder().user(user).build()));
+        return wishlistRepository.findByUser(user).orElseGet(() -> empty(user));
+    }
+
+    private Wishlist empty(User user) {
+        return Wishlist.builder().user(user).build();
     }
 }
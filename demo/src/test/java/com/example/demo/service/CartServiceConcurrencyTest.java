@@ -0,0 +1,155 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.domain.CartItem;
+import com.example.demo.domain.Product;
+import com.example.demo.domain.User;
+import com.example.demo.dto.AddCartItemRequest;
+import com.example.demo.repository.CartRepository;
+import com.example.demo.repository.CouponRepository;
+import com.example.demo.repository.ProductRepository;
+
+/*
+ * Two application nodes in one JVM: the context's CartService and a second one over its own CartStore. Both add
+ * to the same cart at high parallelism; every add that reported success must end up in the stored cart, whether it
+ * was written through (held, and counted in held_stock) or written behind.
+ */
+@SpringBootTest
+class CartServiceConcurrencyTest {
+
+    private static final int STOCK = 10_000;
+    private static final int ADDS_PER_NODE = 200;
+    private static final int THREADS_PER_NODE = 32;
+
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private CartHoldService cartHoldService;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private ConflictRetry conflictRetry;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private CouponRepository couponRepository;
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void concurrentAddsFromTwoNodesAreNeverLost() throws Exception {
+        try (StressFixture fixture = new StressFixture(context, "cart-stress")) {
+            Product product = fixture.product(STOCK, false);
+            User user = fixture.user();
+            CartStore otherStore = otherStore();
+            CartService otherNode = otherNode(otherStore);
+            try {
+                AtomicInteger added = new AtomicInteger();
+                AtomicInteger conflicted = new AtomicInteger();
+                List<Callable<?>> adds = new ArrayList<>();
+                for (int i = 0; i < 2 * ADDS_PER_NODE; i++) {
+                    CartService node = i % 2 == 0 ? cartService : otherNode;
+                    adds.add(() -> {
+                        try {
+                            node.addItem(user, addOne(product));
+                            added.incrementAndGet();
+                        } catch (OptimisticLockingFailureException ex) {
+                            conflicted.incrementAndGet();
+                        }
+                        return null;
+                    });
+                }
+                long elapsedMillis = StressFixture.race(2 * THREADS_PER_NODE, adds);
+
+                CartItem line = cartRepository.findWithItemsByUserId(user.getId()).orElseThrow().getItems().get(0);
+                assertEquals(added.get(), line.getQuantity());
+                assertEquals(added.get(), line.getHeldQuantity());
+                Product stored = productRepository.findById(product.getId()).orElseThrow();
+                assertEquals(STOCK, stored.getStock());
+                assertEquals(added.get(), stored.getHeldStock());
+                assertTrue(conflicted.get() <= ADDS_PER_NODE / 10, conflicted.get()
+                        + " adds gave up after retrying; " + added.get() + " in " + elapsedMillis + " ms");
+            } finally {
+                otherStore.shutdown();
+                cartService.clear(user);
+            }
+        }
+    }
+
+    @Test
+    void writeBehindAddsFromTwoNodesAreNeverLost() throws Exception {
+        try (StressFixture fixture = new StressFixture(context, "cart-stress")) {
+            // Hot products are never held, so every add is written behind and conflicts show up at flush time
+            Product product = fixture.product(STOCK, true);
+            User user = fixture.user();
+            CartStore otherStore = otherStore();
+            CartService otherNode = otherNode(otherStore);
+            try {
+                List<Callable<?>> adds = new ArrayList<>();
+                for (int i = 0; i < 2 * ADDS_PER_NODE; i++) {
+                    CartService node = i % 2 == 0 ? cartService : otherNode;
+                    adds.add(() -> node.addItem(user, addOne(product)));
+                }
+                StressFixture.race(2 * THREADS_PER_NODE, adds);
+            } finally {
+                // Writes out what the second node still has
+                otherStore.shutdown();
+            }
+
+            // The context's store writes on its own flush interval
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            int stored = storedQuantity(user);
+            while (stored != 2 * ADDS_PER_NODE && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+                stored = storedQuantity(user);
+            }
+            assertEquals(2 * ADDS_PER_NODE, stored);
+        }
+    }
+
+    // A second application node: its own CartStore over the same database
+    private CartStore otherStore() {
+        return new CartStore(cartRepository, productCache, jdbcTemplate, transactionManager, conflictRetry,
+                Duration.ofSeconds(1), 500, Duration.ofMinutes(30));
+    }
+
+    private CartService otherNode(CartStore store) {
+        return new CartService(jdbcTemplate, store, couponRepository, productCache, cartHoldService);
+    }
+
+    private int storedQuantity(User user) {
+        return cartRepository.findWithItemsByUserId(user.getId())
+                .map(cart -> cart.getItems().stream().mapToInt(CartItem::getQuantity).sum())
+                .orElse(0);
+    }
+
+    private AddCartItemRequest addOne(Product product) {
+        AddCartItemRequest request = new AddCartItemRequest();
+        request.setProductId(product.getId());
+        request.setQuantity(1);
+        return request;
+    }
+}
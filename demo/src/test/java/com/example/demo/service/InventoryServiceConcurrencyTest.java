@@ -0,0 +1,92 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import com.example.demo.domain.Cart;
+import com.example.demo.domain.CartItem;
+import com.example.demo.domain.Product;
+import com.example.demo.domain.User;
+import com.example.demo.dto.CreateOrderRequest;
+import com.example.demo.exception.OutOfStockException;
+import com.example.demo.repository.CartRepository;
+import com.example.demo.repository.ProductRepository;
+
+@SpringBootTest
+class InventoryServiceConcurrencyTest {
+
+    private static final int STOCK = 50;
+    private static final int CHECKOUTS = 300;
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void parallelCheckoutsOnOneSkuNeverOversell() throws Exception {
+        try (StressFixture fixture = new StressFixture(context, "stress")) {
+            Product product = fixture.product(STOCK, false);
+            List<User> users = new ArrayList<>();
+            for (int i = 0; i < CHECKOUTS; i++) {
+                User user = fixture.user();
+                users.add(user);
+                cartRepository.save(Cart.builder()
+                        .user(user)
+                        .items(new ArrayList<>(List.of(CartItem.builder()
+                                .product(product)
+                                .quantity(1)
+                                .price(BigDecimal.TEN)
+                                .build())))
+                        .build());
+            }
+
+            AtomicInteger placed = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+            List<Callable<?>> checkouts = new ArrayList<>();
+            for (User user : users) {
+                checkouts.add(() -> {
+                    try {
+                        orderService.createOrder(user, orderRequest());
+                        placed.incrementAndGet();
+                    } catch (OutOfStockException ex) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            StressFixture.race(64, checkouts);
+
+            assertEquals(STOCK, placed.get());
+            assertEquals(CHECKOUTS - STOCK, rejected.get());
+            assertEquals(0, productRepository.findById(product.getId()).orElseThrow().getStock());
+        }
+    }
+
+    private CreateOrderRequest orderRequest() {
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setStreet("1 Test Street");
+        request.setCity("Testville");
+        request.setState("TS");
+        request.setZipCode("00000");
+        request.setCountry("Testland");
+        request.setPaymentMethod("COD");
+        request.setShippingFee(BigDecimal.ZERO);
+        request.setTax(BigDecimal.ZERO);
+        return request;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * The journal on its own, over a temporary directory: what a restart recovers after a crash, and when segments
+ * are deleted. A "restart" is a second StockJournal over the same directory.
+ */
+class StockJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoveryIgnoresTornLastLine() throws IOException {
+        StockJournal journal = started();
+        journal.append(1, Map.of(10L, 2));
+        journal.append(2, Map.of(11L, 3));
+        journal.close();
+        // Crash in the middle of the third order's append
+        Files.writeString(segments().get(0), "3 12", StandardCharsets.US_ASCII, StandardOpenOption.APPEND);
+
+        List<StockJournal.Entry> entries = new StockJournal(dir).recover();
+
+        assertEquals(List.of(new StockJournal.Entry(1, 10, 2), new StockJournal.Entry(2, 11, 3)), entries);
+    }
+
+    @Test
+    void recoveryReturnsOnlyOrdersNotYetSettled() {
+        StockJournal journal = started();
+        long settled = journal.append(1, Map.of(10L, 2));
+        journal.rotate();
+        journal.append(2, Map.of(10L, 1, 11L, 4));
+        // Order 1 was written back to the database; order 2 was still pending at the crash
+        journal.release(settled);
+        journal.close();
+
+        Set<StockJournal.Entry> entries = new HashSet<>(new StockJournal(dir).recover());
+
+        assertEquals(Set.of(new StockJournal.Entry(2, 10, 1), new StockJournal.Entry(2, 11, 4)), entries);
+    }
+
+    @Test
+    void segmentIsDeletedOnceRotatedAndReleased() {
+        StockJournal journal = started();
+        long first = journal.append(1, Map.of(10L, 1));
+        long alsoFirst = journal.append(2, Map.of(10L, 1));
+        assertEquals(first, alsoFirst);
+
+        journal.rotate();
+        long second = journal.append(3, Map.of(10L, 1));
+        assertNotEquals(first, second);
+        assertEquals(2, segments().size());
+
+        journal.release(first);
+        assertEquals(2, segments().size(), "segment deleted while order 2 was still outstanding");
+        journal.release(alsoFirst);
+        assertEquals(1, segments().size());
+
+        // The current segment is kept while open, and deleted by the rotation after its last release
+        journal.release(second);
+        assertEquals(1, segments().size());
+        journal.rotate();
+        assertEquals(1, segments().size());
+        assertTrue(new StockJournal(dir).recover().isEmpty());
+        journal.close();
+    }
+
+    @Test
+    void rotateWithoutAppendsKeepsTheSegment() {
+        StockJournal journal = started();
+        journal.rotate();
+        long segment = journal.append(1, Map.of(10L, 1));
+        journal.close();
+
+        assertEquals(1, segment);
+        assertEquals(1, segments().size());
+    }
+
+    @Test
+    void concurrentAppendsAreAllRecovered() throws Exception {
+        int threads = 16;
+        int ordersPerThread = 200;
+        StockJournal journal = started();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> appends = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long firstOrder = (long) t * ordersPerThread;
+            appends.add(pool.submit(() -> {
+                start.await();
+                for (long order = firstOrder; order < firstOrder + ordersPerThread; order++) {
+                    journal.append(order, Map.of(order % 7, 1));
+                    if (order % 50 == 0) {
+                        journal.rotate();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> append : appends) {
+            append.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+        journal.close();
+
+        List<StockJournal.Entry> entries = new StockJournal(dir).recover();
+        assertEquals(threads * ordersPerThread, entries.size());
+        assertEquals(threads * ordersPerThread, entries.stream().map(StockJournal.Entry::orderId).distinct().count());
+    }
+
+    @Test
+    void nodeIdSurvivesRestart() {
+        String nodeId = new StockJournal(dir).nodeId();
+
+        assertEquals(nodeId, new StockJournal(dir).nodeId());
+    }
+
+    private StockJournal started() {
+        StockJournal journal = new StockJournal(dir);
+        journal.reset();
+        return journal;
+    }
+
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".journal")).sorted().toList();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
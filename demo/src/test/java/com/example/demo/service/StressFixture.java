@@ -0,0 +1,108 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.ApplicationContext;
+
+import com.example.demo.domain.Category;
+import com.example.demo.domain.Product;
+import com.example.demo.domain.User;
+import com.example.demo.repository.CartRepository;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.UserRepository;
+
+/*
+ * Rows for one concurrency test run, named with a random tag so runs never collide; close() deletes them along
+ * with the users' orders and carts.
+ */
+final class StressFixture implements AutoCloseable {
+
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final CartRepository cartRepository;
+    private final OrderRepository orderRepository;
+    private final String name;
+    private final String run = UUID.randomUUID().toString().substring(0, 8);
+    private final Category category;
+    private final List<Product> products = new ArrayList<>();
+    private final List<User> users = new ArrayList<>();
+
+    StressFixture(ApplicationContext context, String name) {
+        this.categoryRepository = context.getBean(CategoryRepository.class);
+        this.productRepository = context.getBean(ProductRepository.class);
+        this.userRepository = context.getBean(UserRepository.class);
+        this.cartRepository = context.getBean(CartRepository.class);
+        this.orderRepository = context.getBean(OrderRepository.class);
+        this.name = name;
+        this.category = categoryRepository.save(Category.builder().name(name + "-" + run).build());
+    }
+
+    Product product(int stock, boolean hotSku) {
+        Product product = productRepository.save(Product.builder()
+                .name(name + " SKU " + products.size() + " " + run)
+                .description("Concurrency test product")
+                .price(BigDecimal.TEN)
+                .category(category)
+                .stock(stock)
+                .hotSku(hotSku)
+                .build());
+        products.add(product);
+        return product;
+    }
+
+    User user() {
+        User user = userRepository.save(User.builder()
+                .name(name + " " + users.size())
+                .email(name + "-" + run + "-" + users.size() + "@example.com")
+                .password("not-a-real-hash")
+                .build());
+        users.add(user);
+        return user;
+    }
+
+    // Runs every task on its own pool thread, all released at once; returns the wall time in milliseconds
+    static long race(int threads, List<Callable<?>> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (Callable<?> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (User user : users) {
+            orderRepository.deleteAll(orderRepository.findByUser(user));
+            cartRepository.findByUser(user).ifPresent(cartRepository::delete);
+            userRepository.delete(user);
+        }
+        products.forEach(product -> productRepository.deleteById(product.getId()));
+        categoryRepository.delete(category);
+    }
+}
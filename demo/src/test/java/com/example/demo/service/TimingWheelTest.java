@@ -0,0 +1,116 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The wheel on its own, with a 10 ms tick starting at time 0: deadlines fire on their tick and not before,
+ * across cascades from the higher levels, and cancelled or replaced timers never fire.
+ */
+class TimingWheelTest {
+
+    private static final long TICK = 10;
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+
+    @Test
+    void firesOnTheDeadlineTick() {
+        wheel.schedule("a", 55);
+
+        assertEquals(List.of(), wheel.advance(59));
+        assertEquals(List.of("a"), wheel.advance(60));
+        assertEquals(List.of(), wheel.advance(1_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cascadesFromHigherLevels() {
+        // Level 1 (64 ticks and up), level 2 (4096 ticks and up) and level 3 (262144 ticks and up)
+        long[] deadlineTicks = {64, 65, 130, 4_095, 4_096, 4_097, 12_345, 262_144, 300_001};
+        for (long tick : deadlineTicks) {
+            wheel.schedule("t" + tick, tick * TICK);
+        }
+
+        for (long tick : deadlineTicks) {
+            assertEquals(List.of(), wheel.advance((tick - 1) * TICK), "fired before tick " + tick);
+            assertEquals(List.of("t" + tick), wheel.advance(tick * TICK));
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void everyTimerFiresExactlyOnceAndNeverEarly() {
+        Random random = new Random(42);
+        Map<String, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            long deadline = random.nextLong(1, 2_000_000);
+            deadlines.put("k" + i, deadline);
+            wheel.schedule("k" + i, deadline);
+        }
+
+        long now = 0;
+        while (!deadlines.isEmpty()) {
+            now += random.nextLong(1, 50_000);
+            for (String key : wheel.advance(now)) {
+                Long deadline = deadlines.remove(key);
+                assertTrue(deadline != null, key + " fired twice");
+                assertTrue(deadline <= now, key + " fired at " + now + ", due " + deadline);
+            }
+            // Nothing left behind whose deadline tick has been reached
+            long current = now;
+            deadlines.forEach((key, deadline) ->
+                    assertTrue(Math.ceilDiv(deadline, TICK) * TICK > current, key + " overdue at " + current));
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelledTimerNeverFires() {
+        wheel.schedule("a", 100);
+        wheel.schedule("b", 100);
+
+        assertTrue(wheel.cancel("a"));
+        assertFalse(wheel.cancel("a"));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("b"), wheel.advance(100));
+    }
+
+    @Test
+    void cancelAfterCascadeStillRemovesTheTimer() {
+        wheel.schedule("a", 5_000 * TICK);
+        // Cascaded from level 2 to level 1 at tick 4096, still pending
+        assertEquals(List.of(), wheel.advance(4_100 * TICK));
+
+        assertTrue(wheel.cancel("a"));
+        assertEquals(List.of(), wheel.advance(10_000 * TICK));
+    }
+
+    @Test
+    void rescheduleReplacesTheEarlierTimer() {
+        wheel.schedule("a", 100);
+        wheel.schedule("a", 500);
+
+        assertEquals(List.of(), wheel.advance(400));
+        assertEquals(List.of("a"), wheel.advance(500));
+    }
+
+    @Test
+    void deadlinesInThePastFireOnTheNextTick() {
+        wheel.advance(1_000);
+        wheel.schedule("past", 10);
+        wheel.schedule("now", 1_000);
+
+        assertEquals(List.of(), wheel.advance(1_009));
+        List<String> fired = wheel.advance(1_010);
+        assertEquals(2, fired.size());
+        assertTrue(fired.containsAll(List.of("past", "now")));
+    }
+}
@@ -6,6 +6,11 @@ const cartAPI = {
     productId, 
     quantity 
   }),
+  // operations: [{ op: 'ADD' | 'SET' | 'REMOVE', productId, quantity }], applied in one request
+  updateCartItems: (operations) => api.patch('/api/cart/items', { operations }),
+  updateCartItem: (productId, quantity) => api.patch('/api/cart/items', {
+    operations: [{ op: 'SET', productId, quantity }]
+  }),
   removeCartItem: (productId) => api.delete(`/api/cart/items/${productId}`),
   clearCart: () => api.delete('/api/cart'),
   applyCoupon: (code) => api.post('/api/coupons/apply', { code }),
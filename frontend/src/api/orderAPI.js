@@ -6,7 +6,15 @@ const orderAPI = {
   getOrdersByPaymentStatus: (status, params = {}) => api.get(`/api/orders/payment/${status}`, { params }),
   getOrdersByDeliveryStatus: (status, params = {}) => api.get(`/api/orders/status/${status}`, { params }),
   getOrdersByDateRange: (startDate, endDate, params = {}) => api.get(`/api/orders/date/${startDate}/${endDate}`, { params }),
-  createOrder: (orderData) => api.post('/api/orders', orderData),
+  // The same key on a retry returns the order already placed instead of placing another
+  createOrder: (orderData, idempotencyKey) => api.post('/api/orders', orderData, {
+    headers: idempotencyKey ? { 'Idempotency-Key': idempotencyKey } : {}
+  }),
+  // Asynchronous checkout: 202 with { orderId, stage }, then poll until CONFIRMED or FAILED
+  submitCheckout: (orderData, idempotencyKey) => api.post('/api/checkouts', orderData, {
+    headers: idempotencyKey ? { 'Idempotency-Key': idempotencyKey } : {}
+  }),
+  getCheckoutStatus: (orderId) => api.get(`/api/checkouts/${orderId}`),
   updateOrderStatus: (id, statusData) => api.put(`/api/orders/${id}`, statusData),
   cancelOrder: (id) => api.delete(`/api/orders/${id}`)
 };
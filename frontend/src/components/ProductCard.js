@@ -102,7 +102,7 @@ const ProductCard = ({ product, loading = false }) => {
   // Handle missing product data
   if (!product) return null;
   
-  const { _id, name, price, salePrice, images, ratings } = product;
+  const { _id, name, price, salePrice, images, thumbnail, ratings } = product;
   const isOnSale = salePrice > 0 && salePrice < price;
   const isMobile = window.innerWidth <= 600;
 
@@ -116,7 +116,7 @@ const ProductCard = ({ product, loading = false }) => {
           <CardMedia
             component="img"
             height={isMobile ? "140" : "200"}
-            image={images?.[0] || "https://via.placeholder.com/200"}
+            image={thumbnail || images?.[0] || "https://via.placeholder.com/200"}
             alt={name}
             sx={{ objectFit: 'contain' }}
           />
@@ -14,7 +14,6 @@ import {
   ListItemText,
   ListItemAvatar,
   Avatar,
-  Typography,
   Popper,
   ClickAwayListener,
   CircularProgress
@@ -43,13 +42,13 @@ const SearchBar = () => {
     
     setLoading(true);
     try {
-      const response = await api.get('/api/products', {
+      const response = await api.get('/api/products/suggest', {
         params: {
-          search: value,
-          limit: 5
+          prefix: value,
+          limit: 8
         }
       });
-      setSearchResults(response.data.data || []);
+      setSearchResults(response.data || []);
     } catch (error) {
       console.error('Search error:', error);
       setSearchResults([]);
@@ -78,8 +77,10 @@ const SearchBar = () => {
     }
   };
   
-  const handleItemClick = (productId) => {
-    navigate(`/products/${productId}`);
+  const handleItemClick = (suggestion) => {
+    navigate(suggestion.type === 'category'
+      ? `/products?category=${suggestion.id}`
+      : `/products/${suggestion.id}`);
     setSearchTerm('');
     setSearchResults([]);
   };
@@ -164,37 +165,23 @@ const SearchBar = () => {
         >
           <Paper elevation={3}>
             <List sx={{ p: 0 }}>
-              {searchResults.map((product) => (
+              {searchResults.map((suggestion) => (
                 <ListItem 
                   button 
-                  key={product._id} 
-                  onClick={() => handleItemClick(product._id)}
+                  key={`${suggestion.type}-${suggestion.id}`} 
+                  onClick={() => handleItemClick(suggestion)}
                   divider
                 >
                   <ListItemAvatar>
                     <Avatar 
-                      alt={product.name} 
-                      src={product.images?.[0] || ''} 
+                      alt={suggestion.text} 
+                      src={suggestion.image || ''} 
                       variant="rounded"
                     />
                   </ListItemAvatar>
                   <ListItemText
-                    primary={product.name}
-                    secondary={
-                      <Typography
-                        variant="body2"
-                        color="text.secondary"
-                        sx={{
-                          overflow: 'hidden',
-                          textOverflow: 'ellipsis',
-                          display: '-webkit-box',
-                          WebkitLineClamp: 1,
-                          WebkitBoxOrient: 'vertical',
-                        }}
-                      >
-                        ${product.price.toFixed(2)}
-                      </Typography>
-                    }
+                    primary={suggestion.text}
+                    secondary={suggestion.type === 'category' ? 'Category' : null}
                   />
                 </ListItem>
               ))}
@@ -62,9 +62,9 @@ const CartPage = () => {
     }
   }, [error]);
   
-  const handleQuantityChange = (itemId, currentQuantity, change) => {
+  const handleQuantityChange = (productId, currentQuantity, change) => {
     const newQuantity = Math.max(1, currentQuantity + change);
-    dispatch(updateCartItem({ itemId, quantity: newQuantity }));
+    dispatch(updateCartItem({ productId, quantity: newQuantity }));
   };
   
   const handleRemoveItem = (productId) => {
@@ -219,7 +219,7 @@ const CartPage = () => {
                         <Box sx={{ display: 'flex', alignItems: 'center', justifyContent: 'center' }}>
                           <IconButton 
                             size="small" 
-                            onClick={() => handleQuantityChange(item._id, item.quantity, -1)}
+                            onClick={() => handleQuantityChange(productId, item.quantity, -1)}
                             disabled={item.quantity <= 1}
                           >
                             <Remove />
@@ -235,7 +235,7 @@ const CartPage = () => {
                           />
                           <IconButton 
                             size="small" 
-                            onClick={() => handleQuantityChange(item._id, item.quantity, 1)}
+                            onClick={() => handleQuantityChange(productId, item.quantity, 1)}
                           >
                             <Add />
                           </IconButton>
@@ -54,6 +54,9 @@ const CheckoutPage = () => {
   const [orderComplete, setOrderComplete] = useState(false);
   const [orderId, setOrderId] = useState(null);
   const [shipping, setShipping] = useState(5.99); // Default to standard shipping fee
+  // One key per checkout attempt: resubmitting after a timeout cannot place the order twice. A checkout that
+  // failed is finished, so the next attempt gets a new key instead of the failed order's stored answer.
+  const [idempotencyKey, setIdempotencyKey] = useState(() => crypto.randomUUID());
   
   // Get cart state from Redux
   const { items, totalAmount, discountedAmount, coupon } = useSelector(state => state.cart);
@@ -166,13 +169,31 @@ const CheckoutPage = () => {
         couponCode: coupon ? coupon.code : null
       };
       
-      // Submit order to API
-      const response = await orderAPI.createOrder(orderData);
+      // Submit the checkout, then follow it until the order is confirmed or refused
+      let status = (await orderAPI.submitCheckout(orderData, idempotencyKey)).data;
+      while (status.stage !== 'CONFIRMED' && status.stage !== 'FAILED') {
+        await new Promise((resolve) => setTimeout(resolve, 500));
+        status = (await orderAPI.getCheckoutStatus(status.orderId)).data;
+      }
+      if (status.stage === 'FAILED') {
+        setIdempotencyKey(crypto.randomUUID());
+        setOrderError(status.error || 'Failed to place order');
+        return;
+      }
       setOrderComplete(true);
-      setOrderId(response.data.data._id);
+      setOrderId(status.orderId);
       
     } catch (error) {
-      setOrderError(error.response?.data?.error || 'Failed to place order');
+      const changes = error.response?.data?.changes;
+      if (changes) {
+        // The cart now carries the new prices; reload it so the summary matches before resubmitting
+        dispatch(fetchCart());
+        setOrderError(`${error.response.data.message}: ${changes
+          .map((change) => `${change.name} ${change.previousPrice} → ${change.currentPrice}`)
+          .join(', ')}`);
+      } else {
+        setOrderError(error.response?.data?.error || 'Failed to place order');
+      }
     } finally {
       setOrderSubmitting(false);
     }
@@ -2,7 +2,7 @@ import React, { useEffect } from 'react';
 import { useDispatch, useSelector } from 'react-redux';
 import { useNavigate } from 'react-router-dom';
 import { fetchWishlist, removeFromWishlist } from '../store/slices/wishlistSlice';
-import { addToCart } from '../store/slices/cartSlice';
+import { addToCart, updateCartItems } from '../store/slices/cartSlice';
 
 // MUI components
 import {
@@ -81,6 +81,29 @@ const WishlistPage = () => {
       });
   };
   
+  // One request for the whole wishlist: the server applies the adds all or nothing
+  const handleAddAllToCart = () => {
+    const operations = items
+      .filter(product => product.stock > 0)
+      .map(product => ({ op: 'ADD', productId: product._id, quantity: 1 }));
+    dispatch(updateCartItems(operations))
+      .unwrap()
+      .then(() => {
+        setSnackbar({ 
+          open: true, 
+          message: `${operations.length} products added to cart`, 
+          severity: 'success' 
+        });
+      })
+      .catch((error) => {
+        setSnackbar({ 
+          open: true, 
+          message: error || 'Failed to add products to cart', 
+          severity: 'error' 
+        });
+      });
+  };
+  
   const handleCloseSnackbar = () => {
     setSnackbar({ ...snackbar, open: false });
   };
@@ -111,6 +134,16 @@ const WishlistPage = () => {
         <Typography variant="h4" component="h1">
           My Wishlist
         </Typography>
+        {!loading && items.some(product => product.stock > 0) && (
+          <Button
+            variant="outlined"
+            startIcon={<ShoppingCartIcon />}
+            onClick={handleAddAllToCart}
+            sx={{ ml: 'auto' }}
+          >
+            Add All to Cart
+          </Button>
+        )}
       </Box>
       
       {error && (
@@ -143,7 +143,9 @@ const AdminProducts = () => {
             console.error('Failed to create product:', error);
           });
       } else {
-        dispatch(updateProduct({ id: currentProduct._id, productData: payload }))
+        // The server applies the stock edit as a difference from what this form was loaded with
+        const productData = { ...payload, originalStock: currentProduct.stock };
+        dispatch(updateProduct({ id: currentProduct._id, productData }))
           .unwrap()
           .then(() => {
             setOpenDialog(false);
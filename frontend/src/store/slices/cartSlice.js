@@ -30,9 +30,9 @@ export const addToCart = createAsyncThunk(
 
 export const updateCartItem = createAsyncThunk(
   'cart/updateCartItem',
-  async ({ itemId, quantity }, { rejectWithValue }) => {
+  async ({ productId, quantity }, { rejectWithValue }) => {
     try {
-      const response = await cartAPI.updateCartItem(itemId, quantity);
+      const response = await cartAPI.updateCartItem(productId, quantity);
       return response.data?.data || response.data;
     } catch (error) {
       return rejectWithValue(error.response?.data?.error || 'Failed to update cart item');
@@ -40,6 +40,18 @@ export const updateCartItem = createAsyncThunk(
   }
 );
 
+export const updateCartItems = createAsyncThunk(
+  'cart/updateCartItems',
+  async (operations, { rejectWithValue }) => {
+    try {
+      const response = await cartAPI.updateCartItems(operations);
+      return response.data?.data || response.data;
+    } catch (error) {
+      return rejectWithValue(error.response?.data?.error || 'Failed to update cart');
+    }
+  }
+);
+
 export const removeCartItem = createAsyncThunk(
   'cart/removeCartItem',
   async (productId, { rejectWithValue }) => {
@@ -151,6 +163,20 @@ const cartSlice = createSlice({
         state.error = action.payload;
       })
       
+      // Batch update
+      .addCase(updateCartItems.pending, (state) => {
+        state.loading = true;
+        state.error = null;
+      })
+      .addCase(updateCartItems.fulfilled, (state, action) => {
+        state.loading = false;
+        assignCartPayload(state, action.payload || {});
+      })
+      .addCase(updateCartItems.rejected, (state, action) => {
+        state.loading = false;
+        state.error = action.payload;
+      })
+      
       // Remove cart item
       .addCase(removeCartItem.pending, (state) => {
         state.loading = true;